@@ -0,0 +1,82 @@
+package sf.pnr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sf.pnr.base.Board;
+import sf.pnr.base.Evaluation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cold {
+        private Board[] boards;
+        private Evaluation evaluation;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            boards = Positions.load();
+            evaluation = new Evaluation();
+        }
+
+        // outside of the measurement, every invocation starts with empty evaluation and pawn hash tables
+        @Setup(Level.Invocation)
+        public void clearTables() {
+            evaluation.getEvalHashTable().clear();
+            evaluation.getPawnHashTable().clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class HashHit {
+        private Board[] boards;
+        private Evaluation evaluation;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            boards = Positions.load();
+            evaluation = new Evaluation();
+            for (Board board: boards) {
+                evaluation.evaluate(board);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int evaluateCold(final Cold state) {
+        int sum = 0;
+        for (Board board: state.boards) {
+            sum += state.evaluation.evaluate(board);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int evaluateHashHit(final HashHit state) {
+        int sum = 0;
+        for (Board board: state.boards) {
+            sum += state.evaluation.evaluate(board);
+        }
+        return sum;
+    }
+}
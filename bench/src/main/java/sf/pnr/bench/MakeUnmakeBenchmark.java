@@ -0,0 +1,82 @@
+package sf.pnr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sf.pnr.base.Board;
+import sf.pnr.base.MoveGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MakeUnmakeBenchmark {
+
+    private Board[] boards;
+    private int[][] moves;
+
+    @Setup
+    public void setUp() {
+        boards = Positions.load();
+        moves = new int[boards.length][];
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        moveGenerator.pushFrame();
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            moveGenerator.generatePseudoLegalMoves(board);
+            moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+            moveGenerator.computeCheckAndPins(board);
+            moves[i] = legalMoves(board, moveGenerator);
+        }
+    }
+
+    private static int[] legalMoves(final Board board, final MoveGenerator moveGenerator) {
+        final int[] captures = moveGenerator.getCaptures();
+        final int[] promotions = moveGenerator.getPromotions();
+        final int[] quiet = moveGenerator.getMoves();
+        final int[] all = new int[captures[0] + promotions[0] + quiet[0]];
+        int count = 0;
+        for (int[] list: new int[][]{captures, promotions, quiet}) {
+            for (int i = list[0]; i > 0; i--) {
+                if (moveGenerator.isLegal(board, list[i])) {
+                    all[count++] = list[i];
+                }
+            }
+        }
+        final int[] legal = new int[count];
+        System.arraycopy(all, 0, legal, 0, count);
+        return legal;
+    }
+
+    /**
+     * Plays and takes back every legal move of every position, reported per position.
+     */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public long moveAndTakeBack() {
+        long keys = 0;
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (int move: moves[i]) {
+                final long undo = board.move(move);
+                keys ^= board.getZobristKey();
+                board.takeBack(undo);
+            }
+        }
+        return keys;
+    }
+}
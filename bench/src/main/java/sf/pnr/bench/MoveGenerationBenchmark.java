@@ -0,0 +1,54 @@
+package sf.pnr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sf.pnr.base.Board;
+import sf.pnr.base.MoveGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGenerationBenchmark {
+
+    @Param({"false", "true"})
+    private boolean magicBitboards;
+
+    private Board[] boards;
+    private MoveGenerator moveGenerator;
+
+    @Setup
+    public void setUp() {
+        boards = Positions.load();
+        moveGenerator = new MoveGenerator(magicBitboards);
+        moveGenerator.pushFrame();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int generatePseudoLegalMoves() {
+        int count = 0;
+        for (Board board: boards) {
+            moveGenerator.generatePseudoLegalMoves(board);
+            moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+            count += moveGenerator.getCaptures()[0] + moveGenerator.getMoves()[0] + moveGenerator.getPromotions()[0];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,65 @@
+package sf.pnr.bench;
+
+import sf.pnr.base.Board;
+import sf.pnr.base.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ */
+public final class Positions {
+
+    // every 315th position of tools/sf/pnr/tests/res/gmgames-min3.epd, kept fixed so results stay comparable
+    public static final String CORPUS = "positions.epd";
+    public static final int COUNT = 64;
+
+    private Positions() {
+    }
+
+    public static Board[] load() {
+        final List<String> fens = loadFens();
+        final Board[] boards = new Board[fens.size()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = StringUtils.fromFen(fens.get(i));
+        }
+        return boards;
+    }
+
+    public static List<String> loadFens() {
+        final InputStream is = Positions.class.getResourceAsStream(CORPUS);
+        if (is == null) {
+            throw new IllegalStateException("Missing benchmark corpus: " + CORPUS);
+        }
+        final List<String> fens = new ArrayList<String>(COUNT);
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    line = line.trim();
+                    if (line.length() > 0) {
+                        fens.add(toFen(line));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read benchmark corpus: " + CORPUS, e);
+        }
+        if (fens.size() != COUNT) {
+            throw new IllegalStateException(
+                String.format("Benchmark corpus has %d positions instead of %d", fens.size(), COUNT));
+        }
+        return fens;
+    }
+
+    private static String toFen(final String epd) {
+        final String[] fields = epd.split(" ");
+        return fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " 0 1";
+    }
+}
@@ -0,0 +1,73 @@
+package sf.pnr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sf.pnr.base.Board;
+import sf.pnr.base.MoveGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import static sf.pnr.base.Utils.*;
+
+/**
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticExchangeEvaluationBenchmark {
+
+    private Board[] boards;
+    private int[][] captures;
+    private MoveGenerator moveGenerator;
+
+    @Setup
+    public void setUp() {
+        boards = Positions.load();
+        captures = new int[boards.length][];
+        moveGenerator = new MoveGenerator();
+        moveGenerator.pushFrame();
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            moveGenerator.generatePseudoLegalMoves(board);
+            final int[] generated = moveGenerator.getCaptures();
+            final int[] positionCaptures = new int[generated[0]];
+            int count = 0;
+            for (int j = generated[0]; j > 0; j--) {
+                // en passant captures have an empty target square
+                if ((generated[j] & MOVE_TYPE) != MT_EN_PASSANT) {
+                    positionCaptures[count++] = generated[j];
+                }
+            }
+            captures[i] = new int[count];
+            System.arraycopy(positionCaptures, 0, captures[i], 0, count);
+        }
+    }
+
+    /**
+     * Evaluates the exchange on the target square of every capture of every position, reported per position.
+     */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int staticExchangeEvaluation() {
+        int sum = 0;
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (int capture: captures[i]) {
+                sum += moveGenerator.staticExchangeEvaluation(board, getFromPosition(capture), getToPosition(capture));
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,64 @@
+package sf.pnr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sf.pnr.alg.TranspositionTable;
+import sf.pnr.base.Board;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TranspositionTableBenchmark {
+
+    private static final long MISS_MASK = 0x5A5A5A5A5A5A5A5AL;
+
+    private long[] keys;
+    private TranspositionTable transpositionTable;
+
+    @Setup
+    public void setUp() {
+        final Board[] boards = Positions.load();
+        keys = new long[boards.length];
+        transpositionTable = new TranspositionTable();
+        for (int i = 0; i < boards.length; i++) {
+            keys[i] = boards[i].getZobristKey();
+            transpositionTable.set(keys[i], TranspositionTable.TT_TYPE_EXACT, 0, 5, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public long probeHit() {
+        long result = 0;
+        for (long key: keys) {
+            result ^= transpositionTable.read(key);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public long probeMiss() {
+        long result = 0;
+        for (long key: keys) {
+            result ^= transpositionTable.read(key ^ MISS_MASK);
+        }
+        return result;
+    }
+}
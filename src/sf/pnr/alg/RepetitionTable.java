@@ -80,6 +80,10 @@ public final class RepetitionTable {
         Arrays.fill(array, 0);
     }
 
+    public void copyFrom(final RepetitionTable other) {
+        System.arraycopy(other.array, 0, array, 0, ARRAY_LENGHT);
+    }
+
     public int scan() {
         int emptySlots = 0;
         for (long entry: array) {
@@ -4,6 +4,14 @@ import sf.pnr.base.Configurable;
 import sf.pnr.base.Evaluation;
 import sf.pnr.base.Utils;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import static sf.pnr.base.Utils.BASE_INFO;
@@ -13,8 +21,17 @@ import static sf.pnr.base.Utils.BASE_INFO;
 public final class TranspositionTable {
     private static final int ARRAY_SIZE_SHIFT = 20;
     private static final int ARRAY_SIZE = 1 << ARRAY_SIZE_SHIFT;
-    private static final int ARRAY_LENGHT = ARRAY_SIZE >> 3;
-    private static final int ARRAY_MASK = (ARRAY_LENGHT >> 1) - 1;
+    private static final int MAX_SEGMENT_SIZE_SHIFT = 30;
+    private static final int CACHE_LINE_SIZE = 64;
+    private static final int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+    private static final long FILE_MAGIC = 0x504E525454303031L; // "PNRTT001"
+    private static final int FILE_HEADER_SIZE = 64;
+    private static final ByteOrder FILE_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    // one entry is two longs (key ^ value, value), four entries form a 64 byte bucket
+    private static final int ENTRY_LENGTH = 2;
+    private static final int BUCKET_ENTRY_COUNT = 4;
+    private static final int BUCKET_LENGTH = BUCKET_ENTRY_COUNT * ENTRY_LENGTH;
+    private static final int BUCKET_LENGTH_SHIFT = Integer.numberOfTrailingZeros(BUCKET_LENGTH);
 
     public static final long TT_VALUE = 0x000000000000FFFFL;
     public static final long TT_DEPTH = 0x0000000000FF0000L;
@@ -32,44 +49,87 @@ public final class TranspositionTable {
     public static final long TT_AGE = 0x03FFL << TT_SHIFT_AGE;
     public static final long TT_ZOBRIST_MASK = ~TT_AGE;
 
-    private static final int MAX_CHECK_COUNT = 16;
-    private static final int MAX_CHECK_INDEX = 2 * MAX_CHECK_COUNT;
+    public static final String BACKEND_HEAP = "heap";
+    public static final String BACKEND_DIRECT = "direct";
 
     @Configurable(Configurable.Key.TRANSP_TABLE_SIZE)
     private static int TABLE_SIZE = 1;
+    @Configurable(Configurable.Key.TRANSP_TABLE_BACKEND)
+    private static String BACKEND = BACKEND_HEAP;
+    @Configurable(Configurable.Key.TRANSP_TABLE_HUGE_PAGES)
+    private static boolean HUGE_PAGES = false;
 
-    private final long[][] arrays;
+    // exactly one of the two is used, depending on the backend (or on the file the table was loaded from)
+    private long[][] arrays;
+    private LongBuffer[] buffers;
+    private int segmentCount;
+    private int segmentLength;
+    // a buffer holds 1 << segmentsPerBufferShift consecutive segments, only loaded tables keep more than one
+    private int segmentsPerBufferShift;
+    private int bucketMask;
     private long age;
 
     public TranspositionTable() {
-        final int size = TABLE_SIZE * 1024 * 1024;
-        final int arrayCount = size >>> ARRAY_SIZE_SHIFT;
-        arrays = new long[arrayCount][ARRAY_LENGHT];
+        final long size = ((long) TABLE_SIZE) << 20;
+        if (BACKEND_DIRECT.equals(BACKEND)) {
+            // segments have to be a power of two, the largest one that divides the table size is used
+            final int segmentSizeShift = Math.min(Long.numberOfTrailingZeros(size), MAX_SEGMENT_SIZE_SHIFT);
+            segmentCount = (int) (size >>> segmentSizeShift);
+            segmentLength = (1 << segmentSizeShift) >> 3;
+            segmentsPerBufferShift = 0;
+            arrays = null;
+            buffers = new LongBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                buffers[i] = allocateDirect(1 << segmentSizeShift);
+            }
+        } else if (BACKEND_HEAP.equals(BACKEND)) {
+            segmentCount = (int) (size >>> ARRAY_SIZE_SHIFT);
+            segmentLength = ARRAY_SIZE >> 3;
+            arrays = new long[segmentCount][segmentLength];
+            buffers = null;
+        } else {
+            throw new IllegalStateException("Unknown transposition table backend: " + BACKEND);
+        }
+        bucketMask = (segmentLength >> BUCKET_LENGTH_SHIFT) - 1;
+    }
+
+    private static LongBuffer allocateDirect(final int segmentSize) {
+        // buckets have to start on a cache line, with the huge page hint the segment starts on a page boundary
+        // so that the kernel can back it with transparent huge pages
+        final int alignment = HUGE_PAGES && segmentSize >= HUGE_PAGE_SIZE? HUGE_PAGE_SIZE: CACHE_LINE_SIZE;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(segmentSize + alignment);
+        final int offset = buffer.alignmentOffset(0, alignment);
+        buffer.position(offset == 0? 0: alignment - offset);
+        buffer.limit(buffer.position() + segmentSize);
+        return buffer.slice().order(ByteOrder.nativeOrder()).asLongBuffer();
     }
 
+    /**
+     * Entries are stored as (key ^ value, value) pairs, so an entry that was overwritten concurrently by another
+     * thread fails the key check instead of returning a value that belongs to a different position.
+     */
     public long read(final long zobrist) {
-        final int hashed = hash(zobrist);
-        final int startIndex = hashed << 1;
-        final long[] array = getArraySegment(zobrist);
+        final int startIndex = hash(zobrist) << BUCKET_LENGTH_SHIFT;
         final long maskedZobrist = zobrist & TT_ZOBRIST_MASK;
-
-        for (int i = startIndex; i < ARRAY_LENGHT; i += 2) {
-            if ((array[i] & TT_ZOBRIST_MASK) == maskedZobrist) {
-                return array[i + 1];
-            } else if (array[i] == 0) {
-                return 0;
-            } else if (i > startIndex + MAX_CHECK_INDEX) {
-                return 0;
+        if (arrays != null) {
+            final long[] array = arrays[getSegmentIndex(zobrist)];
+            for (int i = startIndex, end = startIndex + BUCKET_LENGTH; i < end; i += ENTRY_LENGTH) {
+                final long value = array[i + 1];
+                final long key = array[i] ^ value;
+                if ((key & TT_ZOBRIST_MASK) == maskedZobrist && key != 0) {
+                    return value;
+                }
             }
-        }
-        final int toCheck = MAX_CHECK_INDEX - (ARRAY_LENGHT - startIndex);
-        for (int i = 0; i < startIndex; i += 2) {
-            if ((array[i] & TT_ZOBRIST_MASK) == maskedZobrist) {
-                return array[i + 1];
-            } else if (array[i] == 0) {
-                return 0;
-            } else if (i > toCheck) {
-                return 0;
+        } else {
+            final int segmentIndex = getSegmentIndex(zobrist);
+            final LongBuffer buffer = buffers[segmentIndex >>> segmentsPerBufferShift];
+            final int offset = getBufferOffset(segmentIndex) + startIndex;
+            for (int i = offset, end = offset + BUCKET_LENGTH; i < end; i += ENTRY_LENGTH) {
+                final long value = buffer.get(i + 1);
+                final long key = buffer.get(i) ^ value;
+                if ((key & TT_ZOBRIST_MASK) == maskedZobrist && key != 0) {
+                    return value;
+                }
             }
         }
         return 0;
@@ -80,88 +140,94 @@ public final class TranspositionTable {
         assert (Utils.getToPosition(move) & 0x88) == 0;
         assert move != 0 || type != TT_TYPE_EXACT;
         assert value < Evaluation.VAL_MIN * -2;
-        final int hashed = hash(zobrist);
-        final int startIndex = hashed << 1;
-        final long[] array = getArraySegment(zobrist);
+        final int startIndex = hash(zobrist) << BUCKET_LENGTH_SHIFT;
+        final int segmentIndex = getSegmentIndex(zobrist);
         final long ttValue = type | (((long) (move & BASE_INFO)) << TT_SHIFT_MOVE) | (depth << TT_SHIFT_DEPTH) |
             (value << TT_SHIFT_VALUE);
+        final long maskedZobrist = zobrist & TT_ZOBRIST_MASK;
         int minAge = Integer.MAX_VALUE;
         int minAgeIndex = startIndex;
-        final long maskedZobrist = zobrist & TT_ZOBRIST_MASK;
-        for (int i = startIndex; i < ARRAY_LENGHT; i += 2) {
-            if ((array[i] & TT_ZOBRIST_MASK) == maskedZobrist) {
-                final int ttDepth = (int) ((array[i + 1] & TT_DEPTH) >>> TT_SHIFT_DEPTH);
-                if (ttDepth < depth || ttDepth < depth + 2 && (array[i + 1] & TT_TYPE) != TT_TYPE_EXACT && type == TT_TYPE_EXACT) {
-                    array[i + 1] = ttValue;
+        for (int i = startIndex, end = startIndex + BUCKET_LENGTH; i < end; i += ENTRY_LENGTH) {
+            final long oldValue = get(segmentIndex, i + 1);
+            final long oldKey = get(segmentIndex, i) ^ oldValue;
+            if ((oldKey & TT_ZOBRIST_MASK) == maskedZobrist && oldKey != 0) {
+                final int ttDepth = (int) ((oldValue & TT_DEPTH) >>> TT_SHIFT_DEPTH);
+                if (ttDepth < depth || ttDepth < depth + 2 && (oldValue & TT_TYPE) != TT_TYPE_EXACT && type == TT_TYPE_EXACT) {
+                    store(segmentIndex, i, maskedZobrist, ttValue);
                 }
                 return;
-            } else if (array[i] == 0) {
-                array[i] = maskedZobrist | age << TT_SHIFT_AGE;
-                array[i + 1] = ttValue;
-                return;
-            } else if (i > startIndex + MAX_CHECK_INDEX) {
-                array[minAgeIndex] = maskedZobrist | age << TT_SHIFT_AGE;
-                array[minAgeIndex + 1] = ttValue;
+            } else if (oldKey == 0) {
+                store(segmentIndex, i, maskedZobrist, ttValue);
                 return;
             } else {
-                final int mult = (array[i + 1] & TT_TYPE) > 0? 2: 3;
-                final int ttAge = (int) ((array[i] & TT_AGE) >>> TT_SHIFT_AGE) * mult;
+                final int mult = (oldValue & TT_TYPE) > 0? 2: 3;
+                final int ttAge = (int) ((oldKey & TT_AGE) >>> TT_SHIFT_AGE) * mult;
                 if (ttAge < minAge) {
                     minAge = ttAge;
                     minAgeIndex = i;
                 }
             }
         }
-        final int toCheck = MAX_CHECK_INDEX - (ARRAY_LENGHT - startIndex);
-        for (int i = 0; i < startIndex; i += 2) {
-            if ((array[i] & TT_ZOBRIST_MASK) == maskedZobrist) {
-                final int ttDepth = (int) ((array[i + 1] & TT_DEPTH) >>> TT_SHIFT_DEPTH);
-                if (ttDepth < depth || ttDepth < depth + 2 && (array[i + 1] & TT_TYPE) != TT_TYPE_EXACT && type == TT_TYPE_EXACT) {
-                    array[i + 1] = ttValue;
-                }
-                return;
-            } else if (array[i] == 0) {
-                array[i] = maskedZobrist | age << TT_SHIFT_AGE;
-                array[i + 1] = ttValue;
-                return;
-            } else if (i > toCheck) {
-                array[minAgeIndex] = maskedZobrist | age << TT_SHIFT_AGE;
-                array[minAgeIndex + 1] = ttValue;
-                return;
-            } else {
-                final int mult = (array[i + 1] & TT_TYPE) > 0? 2: 3;
-                final int ttAge = (int) ((array[i] & TT_AGE) >>> TT_SHIFT_AGE) * mult;
-                if (ttAge < minAge) {
-                    minAge = ttAge;
-                    minAgeIndex = i;
-                }
-            }
+        store(segmentIndex, minAgeIndex, maskedZobrist, ttValue);
+    }
+
+    private void store(final int segmentIndex, final int index, final long maskedZobrist, final long ttValue) {
+        final long key = maskedZobrist | age << TT_SHIFT_AGE;
+        if (arrays != null) {
+            final long[] array = arrays[segmentIndex];
+            array[index] = key ^ ttValue;
+            array[index + 1] = ttValue;
+        } else {
+            final LongBuffer buffer = buffers[segmentIndex >>> segmentsPerBufferShift];
+            final int offset = getBufferOffset(segmentIndex) + index;
+            buffer.put(offset, key ^ ttValue);
+            buffer.put(offset + 1, ttValue);
         }
     }
 
-    private long[] getArraySegment(final long zobrist) {
-        int arrayIndex = (int) ((zobrist >> 32) % arrays.length);
-        if (arrayIndex < 0) {
-            arrayIndex += arrays.length;
+    private long get(final int segmentIndex, final int index) {
+        if (arrays != null) {
+            return arrays[segmentIndex][index];
+        } else {
+            return buffers[segmentIndex >>> segmentsPerBufferShift].get(getBufferOffset(segmentIndex) + index);
         }
-        return arrays[arrayIndex];
+    }
+
+    private int getBufferOffset(final int segmentIndex) {
+        return (segmentIndex & ((1 << segmentsPerBufferShift) - 1)) * segmentLength;
+    }
+
+    private int getSegmentIndex(final long zobrist) {
+        int segmentIndex = (int) ((zobrist >> 32) % segmentCount);
+        if (segmentIndex < 0) {
+            segmentIndex += segmentCount;
+        }
+        return segmentIndex;
     }
 
     private int hash(final long zobrist) {
-        return (int) (zobrist & ARRAY_MASK);
+        return (int) (zobrist & bucketMask);
     }
 
     public void clear() {
-        for (long[] array: arrays) {
-            Arrays.fill(array, 0);
+        if (arrays != null) {
+            for (long[] array: arrays) {
+                Arrays.fill(array, 0);
+            }
+        } else {
+            for (LongBuffer buffer: buffers) {
+                for (int i = 0, length = buffer.capacity(); i < length; i++) {
+                    buffer.put(i, 0);
+                }
+            }
         }
     }
 
-    public int scan() {
-        int emptySlots = 0;
-        for (long[] array: arrays) {
-            for (int i = 0; i < array.length; i += 2) {
-                if (array[i] == 0) {
+    public long scan() {
+        long emptySlots = 0;
+        for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++) {
+            for (int i = 0; i < segmentLength; i += ENTRY_LENGTH) {
+                if ((get(segmentIndex, i) ^ get(segmentIndex, i + 1)) == 0) {
                     emptySlots++;
                 }
             }
@@ -169,6 +235,112 @@ public final class TranspositionTable {
         return emptySlots;
     }
 
+    /**
+     * Writes the table into a file that can be mapped back by {@link #load(File)}. Must not be called while a search
+     * is running.
+     */
+    public void save(final File file) throws IOException {
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        final long segmentSize = ((long) segmentLength) << 3;
+        final RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+        try {
+            raf.setLength(FILE_HEADER_SIZE + segmentSize * segmentCount);
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(FILE_BYTE_ORDER);
+            header.putLong(FILE_MAGIC).putInt(segmentCount).putInt(segmentLength).putLong(age);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            // written through a buffer instead of mapping the file, every mapping counts against vm.max_map_count
+            final ByteBuffer bytes = ByteBuffer.allocateDirect(ARRAY_SIZE).order(FILE_BYTE_ORDER);
+            final LongBuffer longs = bytes.asLongBuffer();
+            long position = FILE_HEADER_SIZE;
+            for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++) {
+                for (int i = 0; i < segmentLength; i += longs.capacity()) {
+                    final int length = Math.min(longs.capacity(), segmentLength - i);
+                    longs.clear();
+                    if (arrays != null) {
+                        longs.put(arrays[segmentIndex], i, length);
+                    } else {
+                        final LongBuffer source = buffers[segmentIndex >>> segmentsPerBufferShift].duplicate();
+                        final int offset = getBufferOffset(segmentIndex) + i;
+                        source.limit(offset + length);
+                        source.position(offset);
+                        longs.put(source);
+                    }
+                    bytes.clear();
+                    bytes.limit(length << 3);
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                }
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            throw new IOException(String.format("Failed to rename '%s' to '%s'", tmpFile, file));
+        }
+    }
+
+    /**
+     * Replaces the content of the table with the one saved in the file. The file is mapped copy-on-write, so pages
+     * are only read when they are first probed and the search never modifies the file. The table takes the size of
+     * the saved one, the segments are mapped together in chunks of up to 1GB whatever backend saved them. Must not be
+     * called while a search is running.
+     */
+    public void load(final File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        // private (copy-on-write) mappings need a channel that is open for writing too
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(FILE_BYTE_ORDER);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading
+            }
+            header.flip();
+            if (header.remaining() < FILE_HEADER_SIZE || header.getLong() != FILE_MAGIC) {
+                throw new IOException("Not a transposition table file: " + file);
+            }
+            final int newSegmentCount = header.getInt();
+            final int newSegmentLength = header.getInt();
+            final long newAge = header.getLong();
+            final long segmentSize = ((long) newSegmentLength) << 3;
+            if (newSegmentCount <= 0 || newSegmentLength < BUCKET_LENGTH || Integer.bitCount(newSegmentLength) != 1 ||
+                    segmentSize > 1 << MAX_SEGMENT_SIZE_SHIFT ||
+                    channel.size() != FILE_HEADER_SIZE + segmentSize * newSegmentCount) {
+                throw new IOException("Corrupt transposition table file: " + file);
+            }
+            final int newSegmentsPerBufferShift = MAX_SEGMENT_SIZE_SHIFT - Long.numberOfTrailingZeros(segmentSize);
+            final int segmentsPerBuffer = 1 << newSegmentsPerBufferShift;
+            final LongBuffer[] mappedBuffers =
+                new LongBuffer[(int) (((long) newSegmentCount + segmentsPerBuffer - 1) >>> newSegmentsPerBufferShift)];
+            for (int i = 0; i < mappedBuffers.length; i++) {
+                final int firstSegment = i << newSegmentsPerBufferShift;
+                final int bufferSegmentCount = Math.min(segmentsPerBuffer, newSegmentCount - firstSegment);
+                final long position = FILE_HEADER_SIZE + segmentSize * firstSegment;
+                final ByteBuffer mapped =
+                    channel.map(FileChannel.MapMode.PRIVATE, position, segmentSize * bufferSegmentCount);
+                mappedBuffers[i] = mapped.order(FILE_BYTE_ORDER).asLongBuffer();
+            }
+            arrays = null;
+            buffers = mappedBuffers;
+            segmentCount = newSegmentCount;
+            segmentLength = newSegmentLength;
+            segmentsPerBufferShift = newSegmentsPerBufferShift;
+            bucketMask = (segmentLength >> BUCKET_LENGTH_SHIFT) - 1;
+            age = newAge;
+        } finally {
+            // the mappings remain valid after the file is closed
+            raf.close();
+        }
+    }
+
     public void setAge(final long age) {
         this.age = age;
     }
@@ -4,5 +4,9 @@ package sf.pnr.base;
  */
 public interface BestMoveListener {
 
-    public void bestMoveChanged(int depth, int bestMove, int value, long time, int[] bestLine, long nodes);
+    /**
+     * @param pvIndex 1 for the best line, 2.. for the further lines of a MultiPV search
+     */
+    public void bestMoveChanged(int depth, int bestMove, int value, long time, int[] bestLine, long nodes,
+                                int pvIndex);
 }
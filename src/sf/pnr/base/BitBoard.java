@@ -131,8 +131,32 @@ public class BitBoard {
 		0x0000000028000000L, 0x0000000050000000L, 0x00000000A0000000L, 0x0000000040000000L},
         {0x0000000200000000L, 0x0000000500000000L, 0x0000000A00000000L, 0x0000001400000000L,
 		0x0000002800000000L, 0x0000005000000000L, 0x000000A000000000L, 0x0000004000000000L}};
+    public static final long[][] BITBOARD_BETWEEN = new long[64][64];
+    public static final long[][] BITBOARD_LINE = new long[64][64];
 
     static {
+        for (int from = 0; from < 64; from++) {
+            for (int delta: DELTA_QUEEN) {
+                // 0x88 deltas make it easy to detect leaving the board
+                final int from0x88 = convert64To0x88(from);
+                long between = 0L;
+                for (int pos = from0x88 + delta; (pos & 0x88) == 0; pos += delta) {
+                    final int to = convert0x88To64(pos);
+                    BITBOARD_BETWEEN[from][to] = between;
+                    between |= 1L << to;
+                }
+                long line = 1L << from;
+                for (int pos = from0x88 + delta; (pos & 0x88) == 0; pos += delta) {
+                    line |= 1L << convert0x88To64(pos);
+                }
+                for (int pos = from0x88 - delta; (pos & 0x88) == 0; pos -= delta) {
+                    line |= 1L << convert0x88To64(pos);
+                }
+                for (int pos = from0x88 + delta; (pos & 0x88) == 0; pos += delta) {
+                    BITBOARD_LINE[from][convert0x88To64(pos)] = line;
+                }
+            }
+        }
         for (int i = 1; i < 8; i++) {
             BITBOARD_FILES_LEFT[i] = BITBOARD_FILES_LEFT[i - 1] | BITBOARD_FILE[i - 1];
             BITBOARD_FILES_RIGHT[7 - i] = BITBOARD_FILES_RIGHT[8 - i] | BITBOARD_FILE[8 - i];
@@ -149,6 +173,18 @@ public class BitBoard {
         BITBOARD_FILE_NEIGHBOURS[7] = BITBOARD_FILE[6];
     }
 
+    public static long computePieces(final Board board, final int side, final int type) {
+        if (type == KING) {
+            return 1L << convert0x88To64(board.getKing(side));
+        }
+        long bitboard = 0L;
+        final int[] pieces = board.getPieces(side, type);
+        for (int i = pieces[0]; i > 0; i--) {
+            bitboard |= 1L << convert0x88To64(pieces[i]);
+        }
+        return bitboard;
+    }
+
     public static long computeAllPieces(final Board board, final int side) {
         long bitboard = 0L;
         for (int type: TYPES) {
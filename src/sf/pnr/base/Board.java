@@ -18,11 +18,15 @@ public final class Board {
     private final int[] kings = new int[2];
     private final int[] pieceArrayPos = new int[128];
     private final long[] bitboardAllPieces = new long[2];
+    private final long[][] bitboards = new long[7][2];
     private long zobristIncremental = computeZobristIncremental(this);
     private long zobrist = zobristIncremental ^ computeZobristNonIncremental(state);
     private long zobristPawn;
     private final RepetitionTable repetitionTable = new RepetitionTable();
     private final int[] capturedValue = new int[2];
+    private final int[] materialValue = new int[2];
+    private final int[] positionalBonusOpening = new int[2];
+    private final int[] positionalBonusEndgame = new int[2];
 
     public void restart() {
 		System.arraycopy(INITIAL_BOARD, 0, board, 0, board.length);
@@ -61,6 +65,8 @@ public final class Board {
         capturedValue[BLACK] = 0;
         bitboardAllPieces[WHITE] = BitBoard.computeAllPieces(this, WHITE);
         bitboardAllPieces[BLACK] = BitBoard.computeAllPieces(this, BLACK);
+        computeBitboards();
+        computeScores();
 	}
 
 	public void clear() {
@@ -83,6 +89,11 @@ public final class Board {
         capturedValue[BLACK] = INITIAL_MATERIAL_VALUE;
         bitboardAllPieces[WHITE] = 0L;
         bitboardAllPieces[BLACK] = 0L;
+        for (long[] bitboard: bitboards) {
+            bitboard[WHITE] = 0L;
+            bitboard[BLACK] = 0L;
+        }
+        computeScores();
 	}
 	
 	public int[] getBoard() {
@@ -125,6 +136,80 @@ public final class Board {
             Math.max(Evaluation.INITIAL_MATERIAL_VALUE - Evaluation.computeMaterialValueOneSide(this, WHITE), 0);
         bitboardAllPieces[WHITE] = BitBoard.computeAllPieces(this, WHITE);
         bitboardAllPieces[BLACK] = BitBoard.computeAllPieces(this, BLACK);
+        computeBitboards();
+        computeScores();
+    }
+
+    private void computeBitboards() {
+        for (int type: TYPES) {
+            bitboards[type][WHITE] = BitBoard.computePieces(this, WHITE, type);
+            bitboards[type][BLACK] = BitBoard.computePieces(this, BLACK, type);
+        }
+    }
+
+    private boolean checkBitboards() {
+        for (int type: TYPES) {
+            if (bitboards[type][WHITE] != BitBoard.computePieces(this, WHITE, type) ||
+                    bitboards[type][BLACK] != BitBoard.computePieces(this, BLACK, type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void computeScores() {
+        for (int side = BLACK; side <= WHITE; side++) {
+            materialValue[side] = Evaluation.computeMaterialValueOneSide(this, side);
+            positionalBonusOpening[side] =
+                Evaluation.computePositionalBonusOneSide(this, side, VAL_POSITION_BONUS_OPENING);
+            positionalBonusEndgame[side] =
+                Evaluation.computePositionalBonusOneSide(this, side, VAL_POSITION_BONUS_ENDGAME);
+        }
+    }
+
+    private boolean checkScores() {
+        for (int side = BLACK; side <= WHITE; side++) {
+            if (materialValue[side] != Evaluation.computeMaterialValueOneSide(this, side) ||
+                    positionalBonusOpening[side] !=
+                        Evaluation.computePositionalBonusOneSide(this, side, VAL_POSITION_BONUS_OPENING) ||
+                    positionalBonusEndgame[side] !=
+                        Evaluation.computePositionalBonusOneSide(this, side, VAL_POSITION_BONUS_ENDGAME)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Board deepCopy() {
+        final Board copy = new Board();
+        System.arraycopy(board, 0, copy.board, 0, board.length);
+        copy.state = state;
+        copy.state2 = state2;
+        for (int i = 0; i < pieces.length; i++) {
+            System.arraycopy(pieces[i][WHITE], 0, copy.pieces[i][WHITE], 0, pieces[i][WHITE].length);
+            System.arraycopy(pieces[i][BLACK], 0, copy.pieces[i][BLACK], 0, pieces[i][BLACK].length);
+        }
+        copy.kings[WHITE] = kings[WHITE];
+        copy.kings[BLACK] = kings[BLACK];
+        System.arraycopy(pieceArrayPos, 0, copy.pieceArrayPos, 0, pieceArrayPos.length);
+        copy.bitboardAllPieces[WHITE] = bitboardAllPieces[WHITE];
+        copy.bitboardAllPieces[BLACK] = bitboardAllPieces[BLACK];
+        for (int type: TYPES) {
+            copy.bitboards[type][WHITE] = bitboards[type][WHITE];
+            copy.bitboards[type][BLACK] = bitboards[type][BLACK];
+        }
+        copy.zobristIncremental = zobristIncremental;
+        copy.zobrist = zobrist;
+        copy.zobristPawn = zobristPawn;
+        copy.repetitionTable.copyFrom(repetitionTable);
+        copy.capturedValue[WHITE] = capturedValue[WHITE];
+        copy.capturedValue[BLACK] = capturedValue[BLACK];
+        for (int side = BLACK; side <= WHITE; side++) {
+            copy.materialValue[side] = materialValue[side];
+            copy.positionalBonusOpening[side] = positionalBonusOpening[side];
+            copy.positionalBonusEndgame[side] = positionalBonusEndgame[side];
+        }
+        return copy;
     }
 
     public long move(final int move) {
@@ -134,6 +219,8 @@ public final class Board {
         assert zobristPawn == (computeZobrist(this, PAWN) ^ computeZobrist(this, KING));
         assert bitboardAllPieces[WHITE] == BitBoard.computeAllPieces(this, WHITE);
         assert bitboardAllPieces[BLACK] == BitBoard.computeAllPieces(this, BLACK);
+        assert checkBitboards();
+        assert checkScores();
 		final int fromPos = getFromPosition(moveBase);
 		final int piece = board[fromPos];
         assert piece != EMPTY: "FEN: " + StringUtils.toFen(this) + ", move: " + StringUtils.toSimple(move);
@@ -239,6 +326,7 @@ public final class Board {
         assert board[toPos] != EMPTY;
         assert bitboardAllPieces[WHITE] == BitBoard.computeAllPieces(this, WHITE);
         assert bitboardAllPieces[BLACK] == BitBoard.computeAllPieces(this, BLACK);
+        assert checkBitboards();
         assert (((state & WHITE_TO_MOVE) << 1) - 1) == -signum;
 		return undo;
 	}
@@ -259,6 +347,13 @@ public final class Board {
         zobristIncremental ^= zobristMove;
         if (absPiece == PAWN || absPiece == KING) {
             zobristPawn ^= zobristMove;
+        } else {
+            // pawn and king positional bonuses are part of the pawn evaluation
+            final int shift = SHIFT_POSITION_BONUS[toMove];
+            final int[] typeBonusOpening = VAL_POSITION_BONUS_OPENING[absPiece];
+            final int[] typeBonusEndgame = VAL_POSITION_BONUS_ENDGAME[absPiece];
+            positionalBonusOpening[toMove] += typeBonusOpening[toPos + shift] - typeBonusOpening[fromPos + shift];
+            positionalBonusEndgame[toMove] += typeBonusEndgame[toPos + shift] - typeBonusEndgame[fromPos + shift];
         }
         // update the board
         board[toPos] = board[fromPos];
@@ -272,8 +367,9 @@ public final class Board {
         } else {
             kings[toMove] = toPos;
         }
-        bitboardAllPieces[toMove] ^= 1L << fromPos64;
-        bitboardAllPieces[toMove] ^= 1L << toPos64;
+        final long moveMask = (1L << fromPos64) | (1L << toPos64);
+        bitboardAllPieces[toMove] ^= moveMask;
+        bitboards[absPiece][toMove] ^= moveMask;
     }
 
     private void removeFromPieceList(final int side, final int absPiece, final int position) {
@@ -287,14 +383,20 @@ public final class Board {
         pieceIndices[lastPieceNewPos] = lastPieceIdx;
         pieceArrayPos[lastPieceIdx] = lastPieceNewPos;
         pieceArrayPos[position] = 0;
+        materialValue[side] -= VAL_PIECE_INCREMENTS[absPiece][pieceCount];
         pieceIndices[0]--;
         final int position64 = convert0x88To64(position);
         final long zobristKey = ZOBRIST_PIECES[absPiece][side][position64];
         zobristIncremental ^= zobristKey;
         if (absPiece == PAWN) {
             zobristPawn ^= zobristKey;
+        } else {
+            final int shift = SHIFT_POSITION_BONUS[side];
+            positionalBonusOpening[side] -= VAL_POSITION_BONUS_OPENING[absPiece][position + shift];
+            positionalBonusEndgame[side] -= VAL_POSITION_BONUS_ENDGAME[absPiece][position + shift];
         }
         bitboardAllPieces[side] ^= 1L << position64;
+        bitboards[absPiece][side] ^= 1L << position64;
     }
 
     private void addToPieceList(final int side, final int absPiece, final int position) {
@@ -305,13 +407,19 @@ public final class Board {
         assert absPiece != PAWN || pieceCount <= 8;
         pieceIndices[pieceCount] = position;
         pieceArrayPos[position] = pieceIndices[0];
+        materialValue[side] += VAL_PIECE_INCREMENTS[absPiece][pieceCount];
         final int position64 = convert0x88To64(position);
         final long zobristKey = ZOBRIST_PIECES[absPiece][side][position64];
         zobristIncremental ^= zobristKey;
         if (absPiece == PAWN) {
             zobristPawn ^= zobristKey;
+        } else {
+            final int shift = SHIFT_POSITION_BONUS[side];
+            positionalBonusOpening[side] += VAL_POSITION_BONUS_OPENING[absPiece][position + shift];
+            positionalBonusEndgame[side] += VAL_POSITION_BONUS_ENDGAME[absPiece][position + shift];
         }
         bitboardAllPieces[side] ^= 1L << position64;
+        bitboards[absPiece][side] ^= 1L << position64;
     }
 
     public int getStage() {
@@ -328,6 +436,8 @@ public final class Board {
         assert zobristPawn == (computeZobrist(this, PAWN) ^ computeZobrist(this, KING));
         assert bitboardAllPieces[WHITE] == BitBoard.computeAllPieces(this, WHITE);
         assert bitboardAllPieces[BLACK] == BitBoard.computeAllPieces(this, BLACK);
+        assert checkBitboards();
+        assert checkScores();
         assert zobristIncremental == computeZobristIncremental(this);
         repetitionTable.decrement(zobrist);
         // restore the state and the move info
@@ -404,6 +514,8 @@ public final class Board {
         assert pieces[PAWN][1][0] <= 8;
         assert bitboardAllPieces[WHITE] == BitBoard.computeAllPieces(this, WHITE);
         assert bitboardAllPieces[BLACK] == BitBoard.computeAllPieces(this, BLACK);
+        assert checkBitboards();
+        assert checkScores();
 	}
 
     public int getRepetitionCount() {
@@ -438,6 +550,22 @@ public final class Board {
         return bitboardAllPieces[side];
     }
 
+    public long getBitboard(final int side, final int type) {
+        return bitboards[type][side];
+    }
+
+    public int getMaterialValue(final int side) {
+        return materialValue[side];
+    }
+
+    public int getPositionalBonusOpening(final int side) {
+        return positionalBonusOpening[side];
+    }
+
+    public int getPositionalBonusEndgame(final int side) {
+        return positionalBonusEndgame[side];
+    }
+
     public long getZobristKey() {
         return zobrist;
     }
@@ -465,85 +593,51 @@ public final class Board {
     }
 
     public boolean isAttacked(final int position, final int side) {
-        final int[] knights = pieces[KNIGHT][side];
-        for (int i = knights[0]; i > 0; i--) {
-            if ((ATTACK_ARRAY[position - knights[i] + 120] & ATTACK_N) == ATTACK_N) {
-                return true;
-            }
-        }
-        final int[] rooks = pieces[ROOK][side];
-        for (int i = rooks[0]; i > 0; i--) {
-            final int rook = rooks[i];
-            final int attackValue = ATTACK_ARRAY[(position - rook + 120)];
-            if ((attackValue & ATTACK_R) > 0 && isAttackedBySlidingInSight(position, rook, attackValue)) {
-                return true;
-            }
-        }
-        final int[] bishops = pieces[BISHOP][side];
-        for (int i = bishops[0]; i > 0; i--) {
-            final int bishop = bishops[i];
-            final int attackValue = ATTACK_ARRAY[(position - bishop + 120)];
-            if ((attackValue & ATTACK_B) > 0 && isAttackedBySlidingInSight(position, bishop, attackValue)) {
-                return true;
-            }
-        }
-        final int[] queens = pieces[QUEEN][side];
-        for (int i = queens[0]; i > 0; i--) {
-            final int queen = queens[i];
-            final int attackValue = ATTACK_ARRAY[(position - queen + 120)];
-            if ((attackValue & ATTACK_Q) > 0 && isAttackedBySlidingInSight(position, queen, attackValue)) {
-                return true;
-            }
+        return isAttacked64(convert0x88To64(position), side, bitboardAllPieces[WHITE] | bitboardAllPieces[BLACK]);
+    }
+
+    public boolean isAttacked64(final int position64, final int side, final long occupied) {
+        if ((bitboards[KNIGHT][side] & BitBoard.KNIGHT_MOVES[position64]) != 0 ||
+                (bitboards[PAWN][side] & BitBoard.PAWN_ATTACK[1 - side][position64]) != 0 ||
+                (bitboards[KING][side] & BitBoard.KING_MOVES[position64]) != 0) {
+            return true;
         }
-        if (side == WHITE_TO_MOVE) {
-            final int left = position + DL;
-            if ((left & 0x88) == 0 && board[left] == PAWN) return true;
-            final int right = position + DR;
-            if ((right & 0x88) == 0 && board[right] == PAWN) return true;
-        } else {
-            final int left = position + UL;
-            if ((left & 0x88) == 0 && board[left] == -PAWN) return true;
-            final int right = position + UR;
-            if ((right & 0x88) == 0 && board[right] == -PAWN) return true;
+        final long queens = bitboards[QUEEN][side];
+        final long straight = bitboards[ROOK][side] | queens;
+        if (straight != 0 && (straight & MagicBitBoard.getRookAttacks(position64, occupied)) != 0) {
+            return true;
         }
-        return (ATTACK_ARRAY[position - kings[side] + 120] & ATTACK_K) > 0;
+        final long diagonal = bitboards[BISHOP][side] | queens;
+        return diagonal != 0 && (diagonal & MagicBitBoard.getBishopAttacks(position64, occupied)) != 0;
     }
 
-    public void getAttackers(final int position, final int side, final int[] attackers) {
+    public long getAttackers64(final int position64, final int side, final long occupied) {
+        final long queens = bitboards[QUEEN][side];
+        return (bitboards[PAWN][side] & BitBoard.PAWN_ATTACK[1 - side][position64]) |
+            (bitboards[KNIGHT][side] & BitBoard.KNIGHT_MOVES[position64]) |
+            ((bitboards[BISHOP][side] | queens) & MagicBitBoard.getBishopAttacks(position64, occupied)) |
+            ((bitboards[ROOK][side] | queens) & MagicBitBoard.getRookAttacks(position64, occupied)) |
+            (bitboards[KING][side] & BitBoard.KING_MOVES[position64]);
+    }
 
+    public void getAttackers(final int position, final int side, final int[] attackers) {
         attackers[0] = 0;
-        if (side == WHITE_TO_MOVE) {
-            if (((position + DL) & 0x88) == 0 && board[position + DL] == PAWN) attackers[++attackers[0]] = position + DL;
-            if (((position + DR) & 0x88) == 0 && board[position + DR] == PAWN) attackers[++attackers[0]] = position + DR;
-        } else {
-            if (((position + UL) & 0x88) == 0 && board[position + UL] == -PAWN) attackers[++attackers[0]] = position + UL;
-            if (((position + UR) & 0x88) == 0 && board[position + UR] == -PAWN) attackers[++attackers[0]] = position + UR;
-        }
-        final int[] knights = pieces[KNIGHT][side];
-        for (int i = knights[0]; i > 0; i--) {
-            final int knightPos = knights[i];
-            if ((ATTACK_ARRAY[position - knightPos + 120] & ATTACK_N) == ATTACK_N) {
-                attackers[++attackers[0]] = knightPos;
-            }
-        }
-        getAttackedSliding(position, side, BISHOP, ATTACK_B, attackers);
-        getAttackedSliding(position, side, ROOK, ATTACK_R, attackers);
-        getAttackedSliding(position, side, QUEEN, ATTACK_Q, attackers);
-        final int kingPos = kings[side];
-        if ((ATTACK_ARRAY[position - kingPos + 120] & ATTACK_K) > 0) {
-            attackers[++attackers[0]] = kingPos;
-        }
+        final int position64 = convert0x88To64(position);
+        final long occupied = bitboardAllPieces[WHITE] | bitboardAllPieces[BLACK];
+        final long rookAttacks = MagicBitBoard.getRookAttacks(position64, occupied);
+        final long bishopAttacks = MagicBitBoard.getBishopAttacks(position64, occupied);
+        addAttackers(bitboards[PAWN][side] & BitBoard.PAWN_ATTACK[1 - side][position64], attackers);
+        addAttackers(bitboards[KNIGHT][side] & BitBoard.KNIGHT_MOVES[position64], attackers);
+        addAttackers(bitboards[BISHOP][side] & bishopAttacks, attackers);
+        addAttackers(bitboards[ROOK][side] & rookAttacks, attackers);
+        addAttackers(bitboards[QUEEN][side] & (rookAttacks | bishopAttacks), attackers);
+        addAttackers(bitboards[KING][side] & BitBoard.KING_MOVES[position64], attackers);
     }
 
-    private void getAttackedSliding(final int targetPos, final int side, final int absPiece, final int attackBits,
-                                    final int[] attackers) {
-        final int[] positions = pieces[absPiece][side];
-        for (int i = positions[0]; i > 0; i--) {
-            final int pos = positions[i];
-            final int attackValue = ATTACK_ARRAY[(targetPos - pos + 120)];
-            if ((attackValue & attackBits) > 0 && isAttackedBySlidingInSight(targetPos, pos, attackValue)) {
-                attackers[++attackers[0]] = pos;
-            }
+    private static void addAttackers(long attackers64, final int[] attackers) {
+        while (attackers64 != 0) {
+            attackers[++attackers[0]] = convert64To0x88(Long.numberOfTrailingZeros(attackers64));
+            attackers64 &= attackers64 - 1;
         }
     }
 
@@ -7,8 +7,9 @@ import java.lang.annotation.RetentionPolicy;
 public @interface Configurable {
 
     public static enum Key {
-        POLYGLOT_BOOK("polyglot.book"),
-        TRANSP_TABLE_SIZE("transposition.table.size"), EVAL_TABLE_SIZE("evaluation.table.size"),
+        POLYGLOT_BOOK("polyglot.book"), POLYGLOT_BOOKS("polyglot.books"),
+        TRANSP_TABLE_SIZE("transposition.table.size"), TRANSP_TABLE_BACKEND("transposition.table.backend"),
+        TRANSP_TABLE_HUGE_PAGES("transposition.table.hugePages"), EVAL_TABLE_SIZE("evaluation.table.size"),
         EVAL_PAWNTABLE_SIZE("evaluation.pawnTable.size"),
         EVAL_POSITION_PAWN_OPENING("evaluation.position.pawn.opening"),
         EVAL_POSITION_PAWN_ENDGAME("evaluation.position.pawn.endgame"),
@@ -47,6 +48,7 @@ public @interface Configurable {
         EVAL_BONUS_ROOK_SEMIOPENFILE("evaluation.bonus.rook.semiOpenFile"),
         EVAL_BONUS_ROOK_OPENFILE("evaluation.bonus.rook.openFile"),
         EVAL_PENALTY_ATTACKS_AROUND_KING("evaluation.penalty.attacksAroundKing"),
+        EVAL_LAZY_MARGIN("evaluation.lazyMargin"),
         ENGINE_DEPTH_EXT_CHECK("engine.depthExt.check"), ENGINE_DEPTH_EXT_7TH_RANK_PAWN("engine.depthExt.7thRankPawn"),
         ENGINE_DEPTH_EXT_MATE_THREAT("engine.depthExt.mateThreat"), ENGINE_DEPTH_EXT_MAX("engine.depthExt.max"),
         ENGINE_NULL_MOVE_MIN_DEPTH("engine.nullMove.minDepth"), ENGINE_NULL_MOVE_DEPTH_CHANGE_THRESHOLD("engine.nullMove.depthChangeThreshold"),
@@ -55,6 +57,10 @@ public @interface Configurable {
         ENGINE_RAZORING_THRESHOLD("engine.razoring.threshold"),
         ENGINE_LMR_MIN_DEPTH("engine.lmr.minDepth"), ENGINE_LMR_MIN_MOVE("engine.lmr.minMove"),
         ENGINE_ITERATIVE_DEEPENING_TIME_LIMIT("engine.iterative.deepening.time.limit"),
+        ENGINE_TIME_BEST_MOVE_CHANGE_FACTOR("engine.time.bestMoveChangeFactor"),
+        ENGINE_TIME_SCORE_DROP_MARGIN("engine.time.scoreDropMargin"),
+        ENGINE_TIME_SCORE_DROP_FACTOR("engine.time.scoreDropFactor"),
+        ENGINE_TIME_STABLE_DEPTH("engine.time.stableDepth"), ENGINE_TIME_STABLE_FACTOR("engine.time.stableFactor"),
         ENGINE_SEARCH_ROOT_MIN_MOVE("engine.searchRoot.minMove"),
         ENGINE_MOVE_ORDER_CHECK_BONUS("engine.moveOrder.checkBonus"),
         ENGINE_MOVE_ORDER_BLOCKED_CHECK_BONUS("engine.moveOrder.blockedCheckBonus"),
@@ -62,7 +68,8 @@ public @interface Configurable {
         ENGINE_MOVE_ORDER_CASTLING_BONUS("engine.moveOrder.castlingBonus"),
         ENGINE_MOVE_ORDER_POSITIONAL_GAIN_SHIFT("engine.moveOrder.positionalGainShift"),
         ENGINE_MOVE_ORDER_HISTORY_MAX_BITS("engine.moveOrder.historyMaxBits"),
-        ENGINE_MOVE_ORDER_RND_MAX("engine.moveOrder.rndMax");
+        ENGINE_MOVE_ORDER_RND_MAX("engine.moveOrder.rndMax"),
+        ENGINE_THREADS("threads"), ENGINE_MULTI_PV("multiPV"), MOVE_GENERATOR_MAGIC_BITBOARDS("moveGenerator.magicBitboards");
 
         private final String key;
         Key(final String key) {
@@ -29,11 +29,13 @@ public final class Configuration {
 
     private Configuration() {
         initConfigurables(Engine.class);
+        initConfigurables(TimeManager.class);
         initConfigurables(Polyglot.class);
         initConfigurables(TranspositionTable.class);
         initConfigurables(EvalHashTable.class);
         initConfigurables(PawnHashTable.class);
         initConfigurables(Evaluation.class);
+        initConfigurables(MoveGenerator.class);
     }
 
     private void initConfigurables(final Class<?> clazz) {
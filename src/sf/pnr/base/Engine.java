@@ -2,9 +2,15 @@ package sf.pnr.base;
 
 import sf.pnr.alg.TranspositionTable;
 
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import static sf.pnr.alg.TranspositionTable.*;
 import static sf.pnr.base.Evaluation.*;
@@ -59,10 +65,21 @@ public final class Engine {
     private static int DEPTH_EXT_MATE_THREAT = 8;
     @Configurable(Configurable.Key.ENGINE_DEPTH_EXT_MAX)
     private static int DEPTH_EXT_MAX = 16;
-    @Configurable(Configurable.Key.ENGINE_ITERATIVE_DEEPENING_TIME_LIMIT)
-    private static double ITERATIVE_DEEPENING_TIME_LIMIT = 0.9;
     @Configurable(Configurable.Key.ENGINE_SEARCH_ROOT_MIN_MOVE)
     private static int SEARCH_ROOT_MIN_MOVE = 5;
+    @Configurable(Configurable.Key.ENGINE_THREADS)
+    private static int THREADS = 1;
+    @Configurable(Configurable.Key.ENGINE_MULTI_PV)
+    private static int MULTI_PV = 1;
+
+    private static final ExecutorService HELPER_POOL = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "pnr-search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private static final Random RND = new Random(System.currentTimeMillis());
     private final static int[] RND_ARRAY = new int[256];
@@ -81,11 +98,21 @@ public final class Engine {
 
     private final MoveGenerator moveGenerator = new MoveGenerator();
     private final Evaluation evaluation = new Evaluation();
-    private final TranspositionTable transpositionTable = new TranspositionTable();
+    private final TranspositionTable transpositionTable;
     private final int[][][] history = new int[13][64][64];
     private final int[][] killerMoves = new int[MAX_SEARCH_DEPTH << 2][2]; 
+    // root moves skipped while searching the further lines of a MultiPV search, count at index 0
+    private final int[] excludedRootMoves = new int[256];
+    private final int[] searchMoves = new int[256];
+    private long nodeLimit;
+    private final TimeManager timeManager = new TimeManager();
+    private final SearchStats stats = new SearchStats();
+    private final SearchStats searchStats = new SearchStats();
     private long searchStartTime;
-    private long searchEndTime;
+    // volatile so it can be changed while the search is running, see setSearchTimeLeft
+    private volatile long searchEndTime;
+    // set when searchEndTime is changed by another thread, the search thread clears it when it checks the time
+    private volatile boolean timeLimitChanged;
     private long lastCheckTime;
     private long nodeCount;
     private long nodeCountAtNextTimeCheck;
@@ -95,14 +122,48 @@ public final class Engine {
     private int historyShift = 0;
     private int historyShiftGlobal = 0;
     private BestMoveListener listener;
+    private Engine[] helpers = new Engine[0];
+
+    public Engine() {
+        this(new TranspositionTable());
+    }
+
+    public Engine(final TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public long search(final Board board, final int maxDepth, final long timeLeft) {
+        return search(board, maxDepth, timeLeft, 0, 0, null);
+    }
+
+    public long search(final Board board, final int maxDepth, final long timeLeft, final long nodeLimit,
+                       final int mateIn, final int[] rootMoves) {
+        return search(board, maxDepth, timeLeft, timeLeft, nodeLimit, mateIn, rootMoves);
+    }
 
-    public long search(final Board board, int maxDepth, final long timeLeft) {
+    /**
+     * @param optimumTime the time the search should take normally, the time manager adjusts it after each iteration
+     * @param timeLeft hard time limit, the search is cancelled when it runs out
+     * @param nodeLimit the search stops after visiting this many nodes (summed over all threads), 0 for no limit
+     * @param mateIn only look for a mate in this many moves, 0 for a normal search
+     * @param rootMoves only these moves are searched at the root, null or empty to search all of them
+     */
+    public long search(final Board board, int maxDepth, final long optimumTime, final long timeLeft,
+                       final long nodeLimit, final int mateIn, final int[] rootMoves) {
         transpositionTable.setAge((board.getState() & FULL_MOVES) >> SHIFT_FULL_MOVES);
+        if (mateIn > 0 && (maxDepth == 0 || maxDepth > 2 * mateIn - 1)) {
+            // the search stops as soon as it finds a mate, so a mate in n needs at most 2n - 1 plies
+            maxDepth = 2 * mateIn - 1;
+        }
         if (maxDepth == 0) {
-            assert timeLeft > 0;
+            assert timeLeft > 0 || nodeLimit > 0;
             maxDepth = MAX_SEARCH_DEPTH;
         }
+        setSearchMoves(rootMoves);
+        this.nodeLimit = nodeLimit;
         searchStartTime = System.currentTimeMillis();
+        timeManager.start(optimumTime, timeLeft);
+        timeLimitChanged = false;
         if (timeLeft == 0) {
             searchEndTime = Long.MAX_VALUE;
             nodeCountAtNextTimeCheck = Long.MAX_VALUE;
@@ -112,7 +173,28 @@ public final class Engine {
             // assume we can easily do 5 nodes / ms
             nodeCountAtNextTimeCheck = timeLeft << 2;
         }
+        if (nodeLimit > 0) {
+            nodeCountAtNextTimeCheck = Math.min(nodeCountAtNextTimeCheck, Math.max(nodeLimit / Math.max(THREADS, 1), 1));
+        }
+        prepareSearch();
+        final Future<?>[] helperTasks = startHelpers(board, maxDepth);
+        try {
+            return iterativeDeepening(board, maxDepth);
+        } finally {
+            stopHelpers(helperTasks);
+            if (SearchStats.ENABLED) {
+                aggregateStats();
+            }
+        }
+    }
+
+    private void prepareSearch() {
         nodeCount = 0;
+        evaluation.resetLazyEvalCounts();
+        if (SearchStats.ENABLED) {
+            stats.reset();
+            evaluation.resetEvalHashCounts();
+        }
         cancelled = false;
         for (int[] array: killerMoves) {
             Arrays.fill(array, 0);
@@ -128,6 +210,9 @@ public final class Engine {
         historyMaxGlobal >>>=2;
         historyShift = Math.max(0, historyShift - 2);
         historyShiftGlobal = Math.max(0, historyShiftGlobal - 2);
+    }
+
+    private long iterativeDeepening(final Board board, final int maxDepth) {
         int value = Evaluation.VAL_DRAW;
         long searchResult = getSearchResult(0, value);
         for (int depth = 1; depth <= maxDepth; depth++) {
@@ -174,14 +259,19 @@ public final class Engine {
             if (listener != null) {
                 assert move != 0: StringUtils.toFen(board) + " / depth: " + depth + " / value: " + getValueFromSearchResult(result);
                 if (move != 0) {
+                    // the root is not stored in the transposition table when only some of the moves are searched
+                    final int[] bestLine = searchMoves[0] > 0? getLineStartingWith(board, move): getBestLine(board, move);
                     listener.bestMoveChanged(depth, move, value, System.currentTimeMillis() - searchStartTime,
-                        getBestLine(board, move), nodeCount);
+                        bestLine, getTotalNodeCount(), 1);
+                    if (MULTI_PV > 1) {
+                        searchFurtherLines(board, depth, move);
+                    }
                 }
             }
             if (value > VAL_MATE_THRESHOLD) {
                 break;
             }
-            if ((System.currentTimeMillis() - searchStartTime) > (searchEndTime - searchStartTime) * ITERATIVE_DEEPENING_TIME_LIMIT) {
+            if (!timeManager.iterationFinished(depth, move, value)) {
                 break;
             }
         }
@@ -189,6 +279,113 @@ public final class Engine {
         return searchResult;
     }
 
+    /**
+     * Finds the next best root moves one by one, each time excluding the moves of the lines already reported.
+     */
+    private void searchFurtherLines(final Board board, final int depth, final int bestMove) {
+        excludedRootMoves[0] = 1;
+        excludedRootMoves[1] = bestMove;
+        try {
+            for (int pvIndex = 2; pvIndex <= MULTI_PV; pvIndex++) {
+                final long result = negascoutRoot(board, depth << SHIFT_PLY, INITIAL_ALPHA, INITIAL_BETA, 0);
+                final int move = getMoveFromSearchResult(result);
+                if (cancelled || move == 0) {
+                    break;
+                }
+                listener.bestMoveChanged(depth, move, getValueFromSearchResult(result),
+                    System.currentTimeMillis() - searchStartTime, getLineStartingWith(board, move),
+                    getTotalNodeCount(), pvIndex);
+                excludedRootMoves[++excludedRootMoves[0]] = move;
+            }
+        } finally {
+            excludedRootMoves[0] = 0;
+        }
+    }
+
+    // the root entry of the transposition table belongs to the best line, so the line is read from the next ply
+    private int[] getLineStartingWith(final Board board, final int move) {
+        final long undo = board.move(move);
+        final int reply = (int) ((transpositionTable.read(board.getZobristKey()) & TT_MOVE) >> TT_SHIFT_MOVE);
+        final int[] continuation =
+            reply != 0 && board.getRepetitionCount() < 3? getBestLine(board, reply): new int[0];
+        board.takeBack(undo);
+        final int[] line = new int[continuation.length + 1];
+        line[0] = move;
+        System.arraycopy(continuation, 0, line, 1, continuation.length);
+        return line;
+    }
+
+    private Future<?>[] startHelpers(final Board board, final int maxDepth) {
+        final int helperCount = Math.max(THREADS - 1, 0);
+        if (helpers.length != helperCount) {
+            helpers = new Engine[helperCount];
+            for (int i = 0; i < helperCount; i++) {
+                helpers[i] = new Engine(transpositionTable);
+            }
+        }
+        final Future<?>[] tasks = new Future<?>[helperCount];
+        for (int i = 0; i < helperCount; i++) {
+            final Engine helper = helpers[i];
+            final Board helperBoard = board.deepCopy();
+            // odd helpers start one ply deeper so the threads don't all work on the same iteration
+            final int startDepth = 1 + (i & 1);
+            helper.searchStartTime = searchStartTime;
+            helper.searchEndTime = Long.MAX_VALUE;
+            helper.nodeCountAtNextTimeCheck = Long.MAX_VALUE;
+            System.arraycopy(searchMoves, 0, helper.searchMoves, 0, searchMoves[0] + 1);
+            helper.prepareSearch();
+            tasks[i] = HELPER_POOL.submit(new Runnable() {
+                @Override
+                public void run() {
+                    helper.searchAsHelper(helperBoard, maxDepth, startDepth);
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private void stopHelpers(final Future<?>[] tasks) {
+        for (int i = 0; i < tasks.length; i++) {
+            helpers[i].cancel();
+        }
+        for (Future<?> task: tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UndeclaredThrowableException(e, "Interrupted while waiting for the helper threads");
+            } catch (ExecutionException e) {
+                throw new UndeclaredThrowableException(e.getCause(), "Helper thread failed");
+            }
+        }
+    }
+
+    private void searchAsHelper(final Board board, final int maxDepth, final int startDepth) {
+        int value = Evaluation.VAL_DRAW;
+        for (int depth = startDepth; depth <= maxDepth && !cancelled; depth++) {
+            long result;
+            if (depth > startDepth) {
+                final int alpha = value - ASPIRATION_WINDOW;
+                final int beta = value + ASPIRATION_WINDOW;
+                result = negascoutRoot(board, depth << SHIFT_PLY, alpha, beta, 0);
+                if (!cancelled) {
+                    final int aspirationValue = getValueFromSearchResult(result);
+                    if (result == 0 || aspirationValue <= alpha || aspirationValue >= beta) {
+                        result = negascoutRoot(board, depth << SHIFT_PLY, INITIAL_ALPHA, INITIAL_BETA, 0);
+                    }
+                }
+            } else {
+                result = negascoutRoot(board, depth << SHIFT_PLY, INITIAL_ALPHA, INITIAL_BETA, 0);
+            }
+            if (!cancelled) {
+                value = getValueFromSearchResult(result);
+                if (value > VAL_MATE_THRESHOLD) {
+                    break;
+                }
+            }
+        }
+    }
+
     public long negascoutRoot(final Board board, int depth, int alpha, final int beta, final int searchedPly) {
         nodeCount++;
         if (board.getRepetitionCount() == 3) {
@@ -203,7 +400,12 @@ public final class Engine {
         final long ttValue = removeThreefoldRepetition(board, transpositionTable.read(zobristKey));
         int ttMove = (int) ((ttValue & TT_MOVE) >> TT_SHIFT_MOVE);
         final int ttDepth = (int) (((ttValue & TT_DEPTH) >> TT_SHIFT_DEPTH) << SHIFT_PLY);
-        if (ttValue != 0 && ttDepth >= depth) {
+        // the stored result may come from one of the excluded moves
+        final boolean excluding = excludedRootMoves[0] > 0 || searchMoves[0] > 0;
+        if (SearchStats.ENABLED) {
+            stats.ttProbe(SearchStats.NODE_ROOT, excluding? 0: ttValue);
+        }
+        if (ttValue != 0 && ttDepth >= depth && !excluding) {
             final int value = (int) ((ttValue & TT_VALUE) >> TT_SHIFT_VALUE) + VAL_MIN;
             final long ttType = ttValue & TT_TYPE;
             if (ttType == TT_TYPE_EXACT) {
@@ -226,7 +428,11 @@ public final class Engine {
             }
         }
 
-        if (depth > 3 * PLY && (ttMove == 0 || ttDepth < depth / 2)) {
+        if (SearchStats.ENABLED) {
+            stats.ttNoCut(SearchStats.NODE_ROOT, excluding? 0: ttValue);
+        }
+
+        if (depth > 3 * PLY && (ttMove == 0 || ttDepth < depth / 2) && !excluding) {
             // internal iterative deepening
             negascout(board, depth / 2, alpha, beta, false, true, searchedPly);
             ttMove = (int) ((transpositionTable.read(zobristKey) & TT_MOVE) >> TT_SHIFT_MOVE);
@@ -237,6 +443,7 @@ public final class Engine {
         final boolean inCheck = board.attacksKing(1 - toMove);
 
         moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
         int b = beta;
         long bestMoveType = TT_TYPE_ALPHA_CUT;
         int bestScore = VAL_MIN;
@@ -255,20 +462,21 @@ public final class Engine {
                 final int move = getBestMove(moves);
                 assert (move & BASE_INFO) != 0;
 
-                // make the move
-                final long undo = board.move(move);
+                if (excluding && (isExcluded(move) || searchMoves[0] > 0 && !contains(searchMoves, move))) {
+                    continue;
+                }
 
-                // check if the king remained in check
-                // TODO instead: check if isCheck is true and the current move avoids the check or
-                // TODO if the move causes discovered check
-                if (board.attacksKing(1 - toMove)) {
-                    board.takeBack(undo);
+                // skip the move if it would leave the king in check
+                if (!moveGenerator.isLegal(board, move)) {
                     continue;
                 }
 
                 // register that we had a legal move
                 legalMoveCount++;
 
+                // make the move
+                final long undo = board.move(move);
+
                 if (board.getRepetitionCount() == 3) {
                     if (alpha < VAL_DRAW) {
                         alpha = VAL_DRAW;
@@ -318,6 +526,9 @@ public final class Engine {
 //                            bestScore = qscore;
 //                            bestMove = move;
 //                        }
+                        if (SearchStats.ENABLED) {
+                            stats.razoring(qscore < b);
+                        }
                         if (qscore < b) {
                             board.takeBack(undo);
                             continue;
@@ -336,6 +547,9 @@ public final class Engine {
                             return bestMoveType == TT_TYPE_EXACT && (depth <= PLY || legalMoveCount > SEARCH_ROOT_MIN_MOVE)?
                                 getSearchResult(bestMove, alpha): getSearchResult(0, 0);
                         }
+                        if (SearchStats.ENABLED) {
+                            stats.lateMoveReduction(a > alpha);
+                        }
                     }
                 }
 
@@ -357,6 +571,9 @@ public final class Engine {
                         transpositionTable.set(zobristKey, TT_TYPE_BETA_CUT, move, depth >> SHIFT_PLY, a - VAL_MIN);
                         addMoveToHistoryTable(board, move);
                         addMoveToKillers(searchedPly, searchStage, move);
+                        if (SearchStats.ENABLED) {
+                            stats.betaCutoff(legalMoveCount);
+                        }
                         assert move != 0;
                         return getSearchResult(move, a);
                     }
@@ -378,6 +595,9 @@ public final class Engine {
                         transpositionTable.set(zobristKey, TT_TYPE_BETA_CUT, move, depth >> SHIFT_PLY, a - VAL_MIN);
                         addMoveToHistoryTable(board, move);
                         addMoveToKillers(searchedPly, searchStage, move);
+                        if (SearchStats.ENABLED) {
+                            stats.betaCutoff(legalMoveCount);
+                        }
                         assert move != 0;
                         return getSearchResult(move, a);
                     }
@@ -416,7 +636,9 @@ public final class Engine {
             }
         }
         final long result;
-        transpositionTable.set(zobristKey, bestMoveType, bestMove, depth >> SHIFT_PLY, bestScore - VAL_MIN);
+        if (!excluding) {
+            transpositionTable.set(zobristKey, bestMoveType, bestMove, depth >> SHIFT_PLY, bestScore - VAL_MIN);
+        }
         if (bestMove != 0) {
             result = getSearchResult(bestMove, bestScore);
         } else {
@@ -446,7 +668,7 @@ public final class Engine {
         }
 
         // check the time
-        if (nodeCount >= nodeCountAtNextTimeCheck) {
+        if (nodeCount >= nodeCountAtNextTimeCheck || timeLimitChanged) {
             calculateNextTimeCheck();
             if (cancelled) {
                 return alpha;
@@ -456,6 +678,10 @@ public final class Engine {
         final long zobristKey = board.getZobristKey();
         final long ttValue = removeThreefoldRepetition(board, transpositionTable.read(zobristKey));
         final int ttDepth = (int) ((ttValue & TT_DEPTH) >> TT_SHIFT_DEPTH);
+        final int nodeType = beta - alpha > 1? SearchStats.NODE_PV: SearchStats.NODE_NON_PV;
+        if (SearchStats.ENABLED) {
+            stats.ttProbe(nodeType, ttValue);
+        }
         if (ttValue != 0 && ttDepth >= (depth >> SHIFT_PLY)) {
             final int value = (int) ((ttValue & TT_VALUE) >> TT_SHIFT_VALUE) + VAL_MIN;
             final long ttType = ttValue & TT_TYPE;
@@ -482,6 +708,10 @@ public final class Engine {
             }
         }
 
+        if (SearchStats.ENABLED) {
+            stats.ttNoCut(nodeType, ttValue);
+        }
+
         final int state = board.getState();
         final int toMove = state & WHITE_TO_MOVE;
         final boolean inCheck = board.attacksKing(1 - toMove);
@@ -497,6 +727,9 @@ public final class Engine {
                 board.nullMove(prevState);
                 return alpha;
             }
+            if (SearchStats.ENABLED) {
+                stats.nullMove(value >= beta);
+            }
             if (value >= beta) {
                 board.nullMove(prevState);
                 return beta;
@@ -534,8 +767,12 @@ public final class Engine {
         } else {
             futility = false;
         }
+        if (SearchStats.ENABLED && futility) {
+            stats.futilityNode();
+        }
 
         moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
         int b = beta;
         long bestMoveType = TT_TYPE_ALPHA_CUT;
         int bestMove = 0;
@@ -558,19 +795,17 @@ public final class Engine {
                 final int move = getBestMove(moves);
                 assert (move & BASE_INFO) != 0;
 
-                // make the move
-                final long undo = board.move(move);
-
-                // check if the king remained in check
-                // TODO instead: check if isCheck is true and if the current move avoids the check
-                if (board.attacksKing(1 - toMove)) {
-                    board.takeBack(undo);
+                // skip the move if it would leave the king in check
+                if (!moveGenerator.isLegal(board, move)) {
                     continue;
                 }
 
                 // register that we had a legal move
                 legalMoveCount++;
 
+                // make the move
+                final long undo = board.move(move);
+
                 if (board.getRepetitionCount() == 3) {
                     if (alpha < VAL_DRAW) {
                         alpha = VAL_DRAW;
@@ -588,6 +823,10 @@ public final class Engine {
                 final boolean opponentInCheck = board.attacksKing(toMove);
                 if (!allowToRecurseDown && !opponentInCheck) {
                     board.takeBack(undo);
+                    if (SearchStats.ENABLED) {
+                        // the rest of the moves in this stage are skipped
+                        stats.futilityPrune(i);
+                    }
                     break;
                 }
 
@@ -624,6 +863,9 @@ public final class Engine {
 //                            bestScore = qscore;
 //                            bestMove = move;
 //                        }
+                        if (SearchStats.ENABLED) {
+                            stats.razoring(qscore < b);
+                        }
                         if (qscore < b) {
                             board.takeBack(undo);
                             continue;
@@ -641,6 +883,9 @@ public final class Engine {
                             moveGenerator.popFrame();
                             return alpha;
                         }
+                        if (SearchStats.ENABLED) {
+                            stats.lateMoveReduction(a > alpha);
+                        }
                     }
                 }
 
@@ -660,6 +905,9 @@ public final class Engine {
                         transpositionTable.set(zobristKey, TT_TYPE_BETA_CUT, move, depth >> SHIFT_PLY, a - VAL_MIN);
                         addMoveToHistoryTable(board, move);
                         addMoveToKillers(searchedPly, searchStage, move);
+                        if (SearchStats.ENABLED) {
+                            stats.betaCutoff(legalMoveCount);
+                        }
                         return a;
                     }
                 }
@@ -679,6 +927,9 @@ public final class Engine {
                         transpositionTable.set(zobristKey, TT_TYPE_BETA_CUT, move, depth >> SHIFT_PLY, a - VAL_MIN);
                         addMoveToHistoryTable(board, move);
                         addMoveToKillers(searchedPly, searchStage, move);
+                        if (SearchStats.ENABLED) {
+                            stats.betaCutoff(legalMoveCount);
+                        }
                         return a;
                     }
                 }
@@ -762,8 +1013,22 @@ public final class Engine {
         return result;
     }
 
+    /**
+     * Full window quiescence search without a time limit, used to score positions when tuning the evaluation.
+     */
+    public int quiescence(final Board board) {
+        searchStartTime = System.currentTimeMillis();
+        searchEndTime = Long.MAX_VALUE;
+        nodeCountAtNextTimeCheck = Long.MAX_VALUE;
+        prepareSearch();
+        return quiescence(board, VAL_MIN, -VAL_MIN);
+    }
+
     public int quiescence(final Board board, int alpha, int beta) {
         nodeCount++;
+        if (SearchStats.ENABLED) {
+            stats.quiescenceNode();
+        }
 
         if (Evaluation.drawByInsufficientMaterial(board)) {
             return VAL_DRAW;
@@ -772,7 +1037,7 @@ public final class Engine {
         final int state = board.getState();
         final int toMove = state & WHITE_TO_MOVE;
 
-        final int eval = evaluation.evaluate(board);
+        final int eval = evaluation.evaluate(board, alpha, beta);
         if (eval > alpha) {
             alpha = eval;
             if (alpha >= beta && !board.attacksKing(1 - toMove)) {
@@ -782,7 +1047,7 @@ public final class Engine {
         }
 
         // check the time
-        if (nodeCount >= nodeCountAtNextTimeCheck) {
+        if (nodeCount >= nodeCountAtNextTimeCheck || timeLimitChanged) {
             calculateNextTimeCheck();
             if (cancelled) {
                 return alpha;
@@ -791,6 +1056,9 @@ public final class Engine {
 
         final long zobristKey = board.getZobristKey();
         final long ttValue = removeThreefoldRepetition(board, transpositionTable.read(zobristKey));
+        if (SearchStats.ENABLED) {
+            stats.ttProbe(SearchStats.NODE_QUIESCENCE, ttValue);
+        }
         if (ttValue != 0) {
             final long ttType = ttValue & TT_TYPE;
             final int value = (int) ((ttValue & TT_VALUE) >> TT_SHIFT_VALUE) + VAL_MIN;
@@ -816,28 +1084,32 @@ public final class Engine {
             }
         }
 
+        if (SearchStats.ENABLED) {
+            stats.ttNoCut(SearchStats.NODE_QUIESCENCE, ttValue);
+        }
+
         moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
         boolean hasLegalMove = false;
         int b = beta;
         int bestMove = 0;
         int bestScore = VAL_MIN;
         for (SearchStage searchStage: SEARCH_STAGES_QUIESCENCE) {
-            final int[] moves = getMoves(searchStage, board, 0, MAX_SEARCH_DEPTH - 1);
-
             final boolean allowToRecurseDown = (searchStage == SearchStage.CAPTURES_WINNING ||
                     searchStage == SearchStage.PROMOTION);
+            if (!allowToRecurseDown && (hasLegalMove || !moveGenerator.isInCheck())) {
+                // the remaining moves are only played to detect mate
+                continue;
+            }
+            final int[] moves = getMoves(searchStage, board, 0, MAX_SEARCH_DEPTH - 1);
 
             for (int i = moves[0]; i > 0; i--) {
                 final int move = getBestMove(moves);
 
                 assert (move & BASE_INFO) != 0;
 
-                // make the move
-                final long undo = board.move(move);
-
-                // check if the king remained in check
-                if (board.attacksKing(1 - toMove)) {
-                    board.takeBack(undo);
+                // skip the move if it would leave the king in check
+                if (!moveGenerator.isLegal(board, move)) {
                     continue;
                 }
 
@@ -845,10 +1117,12 @@ public final class Engine {
                 hasLegalMove = true;
 
                 if (!allowToRecurseDown) {
-                    board.takeBack(undo);
                     continue;
                 }
 
+                // make the move
+                final long undo = board.move(move);
+
                 // evaluate the move
                 int a = -quiescence(board, -b, -alpha);
 
@@ -963,8 +1237,24 @@ public final class Engine {
     }
 
     private void calculateNextTimeCheck() {
+        timeLimitChanged = false;
+        final long endTime = searchEndTime;
+        long nodesToProcessUntilLimit = Long.MAX_VALUE;
+        if (nodeLimit > 0) {
+            final long nodesLeft = nodeLimit - getTotalNodeCount();
+            if (nodesLeft <= 0) {
+                cancelled = true;
+                return;
+            }
+            // the helpers run at about the same speed, split what is left between the threads
+            nodesToProcessUntilLimit = Math.max(nodesLeft / (helpers.length + 1), 1);
+        }
+        if (endTime == Long.MAX_VALUE) {
+            nodeCountAtNextTimeCheck = nodeLimit > 0? nodeCount + nodesToProcessUntilLimit: Long.MAX_VALUE;
+            return;
+        }
         final long currentTime = System.currentTimeMillis();
-        if (searchEndTime <= currentTime) {
+        if (endTime <= currentTime) {
             cancelled = true;
 //                System.out.printf("info string Cancelling after %d ms, search time: %d ms (node count: %d)\r\n", currentTime - searchStartTime, searchEndTime - searchStartTime, nodeCount);
             return;
@@ -974,12 +1264,12 @@ public final class Engine {
         if (timeEllapsed < 10) {
             timeEllapsed = 10;
         }
-        final long timeLeft = searchEndTime - currentTime;
+        final long timeLeft = endTime - currentTime;
         long nodesToProcessUntilNextCheck = (timeLeft * nodeCount / timeEllapsed) >>> 1;
         if (nodesToProcessUntilNextCheck < 200) {
             nodesToProcessUntilNextCheck = 200;
         }
-        nodeCountAtNextTimeCheck = nodeCount + nodesToProcessUntilNextCheck;
+        nodeCountAtNextTimeCheck = nodeCount + Math.min(nodesToProcessUntilNextCheck, nodesToProcessUntilLimit);
 //        System.out.printf("info string Next check at node count %d\r\n", nodeCountAtNextTimeCheck);
         lastCheckTime = currentTime;
     }
@@ -997,14 +1287,21 @@ public final class Engine {
                 }
                 return moves;
             case CAPTURES_WINNING:
-                moveGenerator.generatePseudoLegalMoves(board);
+                if (moveGenerator.isInCheck()) {
+                    // fills the promotion and quiet move lists as well
+                    moveGenerator.generateEvasions(board);
+                } else {
+                    moveGenerator.generateCaptures(board);
+                }
                 moves = moveGenerator.getCaptures();
                 removeTTMove(moves, ttMove);
                 addSeeMoveValues(board);
                 addMoveValuesAndRemoveTTMoveNormal(moves, board,   0, NO_KILLER_ARRAY);
                 break;
             case PROMOTION:
-                moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+                if (!moveGenerator.isInCheck()) {
+                    moveGenerator.generatePromotions(board);
+                }
                 moves = moveGenerator.getPromotions();
                 removeTTMove(moves, ttMove);
                 break;
@@ -1023,6 +1320,10 @@ public final class Engine {
                 }
                 break;
             case NORMAL:
+                // quiet moves are only generated once the killers failed to produce a cut-off
+                if (!moveGenerator.isInCheck()) {
+                    moveGenerator.generateQuietMoves(board);
+                }
                 moves = moveGenerator.getMoves();
                 if (moves[0] > 1) {
                     addMoveValuesAndRemoveTTMoveNormal(moves, board, ttMove, killerMoves[searchedPly]);
@@ -1121,6 +1422,31 @@ public final class Engine {
         }
     }
 
+    private boolean isExcluded(final int move) {
+        return contains(excludedRootMoves, move);
+    }
+
+    private static boolean contains(final int[] moves, final int move) {
+        for (int i = moves[0]; i > 0; i--) {
+            if ((moves[i] & BASE_INFO) == (move & BASE_INFO)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setSearchMoves(final int[] rootMoves) {
+        if (rootMoves == null) {
+            searchMoves[0] = 0;
+            return;
+        }
+        if (rootMoves.length >= searchMoves.length) {
+            throw new IllegalArgumentException("Too many root moves: " + rootMoves.length);
+        }
+        searchMoves[0] = rootMoves.length;
+        System.arraycopy(rootMoves, 0, searchMoves, 1, rootMoves.length);
+    }
+
     private static boolean isKiller(final int[] killers, final int move) {
         final int fromTo = move & FROM_TO;
         return killers[0] == fromTo | killers[1] == fromTo;
@@ -1130,12 +1456,60 @@ public final class Engine {
         this.searchEndTime = searchEndTime;
     }
 
+    /**
+     * Gives the running search <code>timeLeft</code> ms from now, used to turn a ponder search into a timed one.
+     * Can be called from any thread.
+     */
+    public void setSearchTimeLeft(final long optimumTime, final long timeLeft) {
+        timeManager.restart(optimumTime, timeLeft);
+        searchEndTime = System.currentTimeMillis() + timeLeft;
+        // the search thread recalculates its next check with the new end time
+        timeLimitChanged = true;
+    }
+
     public long getNodeCount() {
         return nodeCount;
     }
 
+    private void aggregateStats() {
+        searchStats.reset();
+        searchStats.add(getThreadStats());
+        for (Engine helper: helpers) {
+            searchStats.add(helper.getThreadStats());
+        }
+    }
+
+    private SearchStats getThreadStats() {
+        stats.setNodes(nodeCount);
+        stats.setEvalHashCounts(evaluation.getEvalHashProbeCount(), evaluation.getEvalHashHitCount());
+        return stats;
+    }
+
+    /**
+     * @return the counters of the last search summed over all threads, only filled in when
+     * {@link SearchStats#ENABLED} is set
+     */
+    public SearchStats getSearchStats() {
+        return searchStats;
+    }
+
+    public long getTotalNodeCount() {
+        long total = nodeCount;
+        for (Engine helper: helpers) {
+            total += helper.nodeCount;
+        }
+        return total;
+    }
+
     public void clear() {
         transpositionTable.clear();
+        clearThreadLocalTables();
+        for (Engine helper: helpers) {
+            helper.clearThreadLocalTables();
+        }
+    }
+
+    private void clearThreadLocalTables() {
         evaluation.getEvalHashTable().clear();
         evaluation.getPawnHashTable().clear();
         for (int[][] arrays: history) {
@@ -1211,6 +1585,9 @@ public final class Engine {
 
     public void cancel() {
         cancelled = true;
+        for (Engine helper: helpers) {
+            helper.cancel();
+        }
     }
 
     public void setBestMoveListener(final BestMoveListener listener) {
@@ -127,6 +127,8 @@ public final class Evaluation {
     @Configurable(Configurable.Key.EVAL_PENALTY_ATTACKS_AROUND_KING)
     public static int[] PENALTY_ATTACKS_AROUND_KING = new int[]{0, -3, -6, -10, -20, -35, -90, -160, -350};
     public static final double DRAW_PROBABILITY_BISHOPS_ON_OPPOSITE = 0.2;
+    @Configurable(Configurable.Key.EVAL_LAZY_MARGIN)
+    public static int LAZY_EVAL_MARGIN = 300;
 
     public static final int INITIAL_MATERIAL_VALUE;
 
@@ -345,8 +347,16 @@ public final class Evaluation {
 
     private final PawnHashTable pawnHashTable = new PawnHashTable();
     private final EvalHashTable evalHashTable = new EvalHashTable();
+    private long lazyEvalCheckCount;
+    private long lazyEvalCutCount;
+    private long evalHashProbeCount;
+    private long evalHashHitCount;
 
     public int evaluate(final Board board) {
+        return evaluate(board, VAL_MIN, -VAL_MIN);
+    }
+
+    public int evaluate(final Board board, final int alpha, final int beta) {
         final int state = board.getState();
         final int halfMoves = (state & HALF_MOVES) >> SHIFT_HALF_MOVES;
         if (halfMoves >= 100) {
@@ -356,6 +366,12 @@ public final class Evaluation {
         final long zobrist = board.getZobristKey() ^ ZOBRIST_TO_MOVE[toMove];
         final int value = evalHashTable.read(zobrist);
         final int signum = (toMove << 1) - 1;
+        if (SearchStats.ENABLED) {
+            evalHashProbeCount++;
+            if (value != 0) {
+                evalHashHitCount++;
+            }
+        }
         if (value != 0) {
             return (value + VAL_MIN) * signum;
         }
@@ -365,60 +381,64 @@ public final class Evaluation {
 
         final int state2 = board.getState2();
         final int stage = board.getStage();
-        final long whites64 = board.getBitboard(WHITE);
-        final long blacks64 = board.getBitboard(BLACK);
-        final long allPieces64 = whites64 | blacks64;
-        final int shiftPositionBonusWhite = SHIFT_POSITION_BONUS[WHITE];
-        final int shiftPositionBonusBlack = SHIFT_POSITION_BONUS[BLACK];
-        int scorePositionalOpening = 0;
-        int scorePositionalEndgame = 0;
-        long whitePawns64 = 0L;
-        long blackPawns64 = 0L;
-        long whitePawnAttacks64 = 0L;
-        long blackPawnAttacks64 = 0L;
-        int attackCount = 0;
-        int defenseCount = 0;
-        int mobilityCount = 0;
+        final int scorePositionalOpening =
+            board.getPositionalBonusOpening(WHITE) - board.getPositionalBonusOpening(BLACK);
+        final int scorePositionalEndgame =
+            board.getPositionalBonusEndgame(WHITE) - board.getPositionalBonusEndgame(BLACK);
+        final int materialValueNoPawnWhite =
+            board.getMaterialValue(WHITE) - VAL_PIECE_COUNTS[PAWN][board.getPieces(WHITE, PAWN)[0]];
+        final int materialValueNoPawnBlack =
+            board.getMaterialValue(BLACK) - VAL_PIECE_COUNTS[PAWN][board.getPieces(BLACK, PAWN)[0]];
+        final int materialValueNoPawnToMove = toMove == BLACK? materialValueNoPawnBlack: materialValueNoPawnWhite;
+        final int scoreMaterialValue = materialValueNoPawnWhite - materialValueNoPawnBlack;
+        final int scoreCastlingPenalty = getCastlingPenaltyAsWhite(state, state2);
+        final int pawnHashValue = pawnEval(board);
 
-        final int[] whitePawns = board.getPieces(WHITE, PAWN);
-        final long[] whitePawnAttacks = PAWN_ATTACK[WHITE];
-        final long[] whitePawnMoves = PAWN_MOVES[WHITE];
-        for (int i = whitePawns[0]; i > 0; i--) {
-            final int pawn = whitePawns[i];
-            final int pawn64 = convert0x88To64(pawn);
-            whitePawns64 |= 1L << pawn64;
-
-            final long pawnAttack64 = whitePawnAttacks[pawn64];
-            final long attacked64 = pawnAttack64 & blacks64;
-            whitePawnAttacks64 |= pawnAttack64;
-            attackCount += Long.bitCount(attacked64);
-            final long defended64 = pawnAttack64 & whites64;
-            defenseCount += Long.bitCount(defended64);
-            final long pawnMoves64 = whitePawnMoves[pawn64];
-            final long doubleBlocker64 = pawnMoves64 & (pawnMoves64 >> 8) & allPieces64;
-            final long mobility64 = pawnMoves64 & (~allPieces64);
-            mobilityCount += Long.bitCount(mobility64 & ~(doubleBlocker64 << 8));
+        // lazy evaluation: skip the expensive terms when the cheap ones are far enough outside the window
+        // (not when the draw probability or the unstoppable pawns could still change the score considerably, nor
+        // without a window to compare to)
+        if (materialValueNoPawnToMove > VAL_PIECE_COUNTS[BISHOP][2] && (alpha > VAL_MIN || beta < -VAL_MIN)) {
+            if (SearchStats.ENABLED) {
+                lazyEvalCheckCount++;
+            }
+            final int lazyScore = (scoreMaterialValue + PawnHashTable.getValueFromPawnHashValue(pawnHashValue) +
+                ((scorePositionalOpening + scoreCastlingPenalty) * (STAGE_MAX - stage) +
+                    scorePositionalEndgame * stage) / STAGE_MAX) * signum;
+            if (lazyScore + LAZY_EVAL_MARGIN <= alpha || lazyScore - LAZY_EVAL_MARGIN >= beta) {
+                if (SearchStats.ENABLED) {
+                    lazyEvalCutCount++;
+                }
+                return lazyScore;
+            }
         }
 
-        final int[] blackPawns = board.getPieces(BLACK, PAWN);
-        final long[] blackPawnAttacks = PAWN_ATTACK[BLACK];
-        final long[] blackPawnMoves = PAWN_MOVES[BLACK];
-        for (int i = blackPawns[0]; i > 0; i--) {
-            final int pawn = blackPawns[i];
-            final int pawn64 = convert0x88To64(pawn);
-            blackPawns64 |= 1L << pawn64;
-
-            final long pawnAttack64 = blackPawnAttacks[pawn64];
-            final long attacked64 = pawnAttack64 & whites64;
-            blackPawnAttacks64 |= pawnAttack64;
-            attackCount -= Long.bitCount(attacked64);
-            final long defended64 = pawnAttack64 & blacks64;
-            defenseCount -= Long.bitCount(defended64);
-            final long pawnMoves64 = blackPawnMoves[pawn64];
-            final long doubleBlocker64 = pawnMoves64 & (pawnMoves64 << 8) & allPieces64;
-            final long mobility64 = pawnMoves64 & (~allPieces64);
-            mobilityCount -= Long.bitCount(mobility64 & ~(doubleBlocker64 >> 8));
-        }
+        final long whites64 = board.getBitboard(WHITE);
+        final long blacks64 = board.getBitboard(BLACK);
+        final long allPieces64 = whites64 | blacks64;
+        final long whitePawns64 = board.getBitboard(WHITE, PAWN);
+        final long blackPawns64 = board.getBitboard(BLACK, PAWN);
+        final long notFileA64 = ~BITBOARD_FILE[0];
+        final long notFileH64 = ~BITBOARD_FILE[7];
+
+        final long whitePawnAttacksLeft64 = (whitePawns64 & notFileA64) << 7;
+        final long whitePawnAttacksRight64 = (whitePawns64 & notFileH64) << 9;
+        final long whitePawnAttacks64 = whitePawnAttacksLeft64 | whitePawnAttacksRight64;
+        final long whitePawnPushes64 = (whitePawns64 << 8) & ~allPieces64;
+        final long whitePawnDoublePushes64 = ((whitePawnPushes64 & BITBOARD_RANK[2]) << 8) & ~allPieces64;
+        final long blackPawnAttacksLeft64 = (blackPawns64 & notFileA64) >>> 9;
+        final long blackPawnAttacksRight64 = (blackPawns64 & notFileH64) >>> 7;
+        final long blackPawnAttacks64 = blackPawnAttacksLeft64 | blackPawnAttacksRight64;
+        final long blackPawnPushes64 = (blackPawns64 >>> 8) & ~allPieces64;
+        final long blackPawnDoublePushes64 = ((blackPawnPushes64 & BITBOARD_RANK[5]) >>> 8) & ~allPieces64;
+
+        int attackCount = Long.bitCount(whitePawnAttacksLeft64 & blacks64) +
+            Long.bitCount(whitePawnAttacksRight64 & blacks64) - Long.bitCount(blackPawnAttacksLeft64 & whites64) -
+            Long.bitCount(blackPawnAttacksRight64 & whites64);
+        int defenseCount = Long.bitCount(whitePawnAttacksLeft64 & whites64) +
+            Long.bitCount(whitePawnAttacksRight64 & whites64) - Long.bitCount(blackPawnAttacksLeft64 & blacks64) -
+            Long.bitCount(blackPawnAttacksRight64 & blacks64);
+        int mobilityCount = Long.bitCount(whitePawnPushes64) + Long.bitCount(whitePawnDoublePushes64) -
+            Long.bitCount(blackPawnPushes64) - Long.bitCount(blackPawnDoublePushes64);
 
         // en passant
         final int enPassant = (state & EN_PASSANT) >> SHIFT_EN_PASSANT;
@@ -451,15 +471,10 @@ public final class Evaluation {
 
         // knights
         int scoreDistance = 0;
-        int materialValueNoPawnWhite = 0;
-        int materialValueNoPawnBlack = 0;
         final long piecesMaskWhite = board.getBitboard(WHITE);
         final long piecesMaskBlack = board.getBitboard(BLACK);
         final int blackKing = board.getKing(BLACK);
         final int[] whiteKnights = board.getPieces(WHITE, KNIGHT);
-        int[] positionalBonusOpening = VAL_POSITION_BONUS_OPENING[KNIGHT];
-        int[] positionalBonusEndGame = VAL_POSITION_BONUS_ENDGAME[KNIGHT];
-        materialValueNoPawnWhite += VAL_PIECE_COUNTS[KNIGHT][whiteKnights[0]];
         long whiteAttacks64 = whitePawnAttacks64;
         for (int i = whiteKnights[0]; i > 0; i--) {
             final int knight = whiteKnights[i];
@@ -473,12 +488,9 @@ public final class Evaluation {
             scoreMobility += BONUS_MOBILITY_KNIGHT[Long.bitCount(knightMask ^ defended64 ^ attacked64)];
             scoreDistance += BONUS_DISTANCE_KNIGHT[
                 distance(knight, blackKing, ATTACK_DISTANCE_KNIGHT, SHIFT_ATTACK_DISTANCE_KNIGHT)];
-            scorePositionalOpening += positionalBonusOpening[knight + shiftPositionBonusWhite];
-            scorePositionalEndgame += positionalBonusEndGame[knight + shiftPositionBonusWhite];
         }
         final int whiteKing = board.getKing(WHITE);
         final int[] blackKnights = board.getPieces(BLACK, KNIGHT);
-        materialValueNoPawnBlack += VAL_PIECE_COUNTS[KNIGHT][blackKnights[0]];
         long blackAttacks64 = blackPawnAttacks64;
         for (int i = blackKnights[0]; i > 0; i--) {
             final int knight = blackKnights[i];
@@ -492,16 +504,11 @@ public final class Evaluation {
             scoreMobility -= BONUS_MOBILITY_KNIGHT[Long.bitCount(knightMask ^ defended64 ^ attacked64)];
             scoreDistance -= BONUS_DISTANCE_KNIGHT[
                 distance(knight, whiteKing, ATTACK_DISTANCE_KNIGHT, SHIFT_ATTACK_DISTANCE_KNIGHT)];
-            scorePositionalOpening -= positionalBonusOpening[knight + shiftPositionBonusBlack];
-            scorePositionalEndgame -= positionalBonusEndGame[knight + shiftPositionBonusBlack];
         }
 
         // bishops
         final int[] squares = board.getBoard();
         final int[] whiteBishops = board.getPieces(WHITE, BISHOP);
-        positionalBonusOpening = VAL_POSITION_BONUS_OPENING[BISHOP];
-        positionalBonusEndGame = VAL_POSITION_BONUS_ENDGAME[BISHOP];
-        materialValueNoPawnWhite += VAL_PIECE_COUNTS[BISHOP][whiteBishops[0]];
         for (int i = whiteBishops[0]; i > 0; i--) {
             final int bishop = whiteBishops[i];
             int mobility = 0;
@@ -522,11 +529,8 @@ public final class Evaluation {
             scoreMobility += BONUS_MOBILITY_BISHOP[mobility];
             scoreDistance += BONUS_DISTANCE_BISHOP[distance(bishop, blackKing, ATTACK_DISTANCE_MASKS[BISHOP],
                 SHIFT_ATTACK_DISTANCES[BISHOP])];
-            scorePositionalOpening += positionalBonusOpening[bishop + shiftPositionBonusWhite];
-            scorePositionalEndgame += positionalBonusEndGame[bishop + shiftPositionBonusWhite];
         }
         final int[] blackBishops = board.getPieces(BLACK, BISHOP);
-        materialValueNoPawnBlack += VAL_PIECE_COUNTS[BISHOP][blackBishops[0]];
         for (int i = blackBishops[0]; i > 0; i--) {
             final int bishop = blackBishops[i];
             int mobility = 0;
@@ -547,16 +551,11 @@ public final class Evaluation {
             scoreMobility -= BONUS_MOBILITY_BISHOP[mobility];
             scoreDistance -= BONUS_DISTANCE_BISHOP[distance(bishop, whiteKing, ATTACK_DISTANCE_MASKS[BISHOP],
                 SHIFT_ATTACK_DISTANCES[BISHOP])];
-            scorePositionalOpening -= positionalBonusOpening[bishop + shiftPositionBonusBlack];
-            scorePositionalEndgame -= positionalBonusEndGame[bishop + shiftPositionBonusBlack];
         }
 
         // rooks
         final int[] whiteRooks = board.getPieces(WHITE, ROOK);
-        positionalBonusOpening = VAL_POSITION_BONUS_OPENING[ROOK];
-        positionalBonusEndGame = VAL_POSITION_BONUS_ENDGAME[ROOK];
         final int whiteRookCount = whiteRooks[0];
-        materialValueNoPawnWhite += VAL_PIECE_COUNTS[ROOK][whiteRookCount];
         int whiteRookFiles = 0;
         int whiteRookRanks = 0;
         int scoreRooksOnOpenFiles = 0;
@@ -584,8 +583,6 @@ public final class Evaluation {
             scoreMobility += BONUS_MOBILITY_ROOK[mobility];
             scoreDistance += BONUS_DISTANCE_ROOK[distance(rook, blackKing, ATTACK_DISTANCE_MASKS[ROOK],
                 SHIFT_ATTACK_DISTANCES[ROOK])];
-            scorePositionalOpening += positionalBonusOpening[rook + shiftPositionBonusWhite];
-            scorePositionalEndgame += positionalBonusEndGame[rook + shiftPositionBonusWhite];
             final long file64 = BitBoard.BITBOARD_FILE[file];
             final long ranksAbove64 = BitBoard.BITBOARD_RANKS_ABOVE[rank];
             scoreRooksOnOpenFiles += (ranksAbove64 & (whitePawns64 | blackPawns64) & file64) == 0? BONUS_ROOKS_ON_SEMI_OPEN_FILE: 0;
@@ -593,7 +590,6 @@ public final class Evaluation {
         }
         final int[] blackRooks = board.getPieces(BLACK, ROOK);
         final int blackRookCount = blackRooks[0];
-        materialValueNoPawnBlack += VAL_PIECE_COUNTS[ROOK][blackRookCount];
         int blackRookFiles = 0;
         int blackRookRanks = 0;
         for (int i = blackRookCount; i > 0; i--) {
@@ -620,8 +616,6 @@ public final class Evaluation {
             scoreMobility -= BONUS_MOBILITY_ROOK[mobility];
             scoreDistance -= BONUS_DISTANCE_ROOK[distance(rook, whiteKing, ATTACK_DISTANCE_MASKS[ROOK],
                 SHIFT_ATTACK_DISTANCES[ROOK])];
-            scorePositionalOpening -= positionalBonusOpening[rook + shiftPositionBonusBlack];
-            scorePositionalEndgame -= positionalBonusEndGame[rook + shiftPositionBonusBlack];
             final long file64 = BitBoard.BITBOARD_FILE[file];
             final long ranksBelow64 = BitBoard.BITBOARD_RANKS_BELOW[rank];
             scoreRooksOnOpenFiles -= (ranksBelow64 & (whitePawns64 | blackPawns64) & file64) == 0? BONUS_ROOKS_ON_SEMI_OPEN_FILE: 0;
@@ -630,9 +624,6 @@ public final class Evaluation {
 
         // queens
         final int[] whiteQueens = board.getPieces(WHITE, QUEEN);
-        positionalBonusOpening = VAL_POSITION_BONUS_OPENING[QUEEN];
-        positionalBonusEndGame = VAL_POSITION_BONUS_ENDGAME[QUEEN];
-        materialValueNoPawnWhite += VAL_PIECE_COUNTS[QUEEN][whiteQueens[0]];
         for (int i = whiteQueens[0]; i > 0; i--) {
             final int queen = whiteQueens[i];
             int mobility = 0;
@@ -653,11 +644,8 @@ public final class Evaluation {
             scoreMobility += BONUS_MOBILITY_QUEEN[mobility];
             scoreDistance += BONUS_DISTANCE_QUEEN[distance(queen, blackKing, ATTACK_DISTANCE_MASKS[QUEEN],
                 SHIFT_ATTACK_DISTANCES[QUEEN])];
-            scorePositionalOpening += positionalBonusOpening[queen + shiftPositionBonusWhite];
-            scorePositionalEndgame += positionalBonusEndGame[queen + shiftPositionBonusWhite];
         }
         final int[] blackQueens = board.getPieces(BLACK, QUEEN);
-        materialValueNoPawnBlack += VAL_PIECE_COUNTS[QUEEN][blackQueens[0]];
         for (int i = blackQueens[0]; i > 0; i--) {
             final int queen = blackQueens[i];
             int mobility = 0;
@@ -678,8 +666,6 @@ public final class Evaluation {
             scoreMobility -= BONUS_MOBILITY_QUEEN[mobility];
             scoreDistance -= BONUS_DISTANCE_QUEEN[distance(queen, whiteKing, ATTACK_DISTANCE_MASKS[QUEEN],
                 SHIFT_ATTACK_DISTANCES[QUEEN])];
-            scorePositionalOpening -= positionalBonusOpening[queen + shiftPositionBonusBlack];
-            scorePositionalEndgame -= positionalBonusEndGame[queen + shiftPositionBonusBlack];
         }
 
         // kings
@@ -701,15 +687,12 @@ public final class Evaluation {
         final int scoreKingEscape = (Long.bitCount(whiteKingAttacks64 & ~blackAttacks64 & ~allPieces64) -
             Long.bitCount(blackKingAttacks64 & ~whiteAttacks64 & ~allPieces64)) * 5;
 
-        final int scoreCastlingPenalty = getCastlingPenaltyAsWhite(state, state2);
         final int scoreRookBonus = BONUS_ROOKS_ON_SAME_FILE * (whiteRookCount - Integer.bitCount(whiteRookFiles)) +
             BONUS_ROOKS_ON_SAME_RANK * (whiteRookCount - Integer.bitCount(whiteRookRanks)) -
             BONUS_ROOKS_ON_SAME_FILE * (blackRookCount - Integer.bitCount(blackRookFiles)) -
             BONUS_ROOKS_ON_SAME_RANK * (blackRookCount - Integer.bitCount(blackRookRanks));
 
-        final int scoreMaterialValue = materialValueNoPawnWhite - materialValueNoPawnBlack;
         final int scoreTrappedPieces = getTrappedPiecesPenaltyAsWhite(board);
-        final int pawnHashValue = pawnEval(board);
         int scorePawn = PawnHashTable.getValueFromPawnHashValue(pawnHashValue);
         if (materialValueNoPawnWhite == 0 && materialValueNoPawnBlack == 0) {
             final int unstoppablePawnDistWhite = PawnHashTable.getUnstoppablePawnDistWhite(pawnHashValue, toMove);
@@ -748,7 +731,6 @@ public final class Evaluation {
         //System.out.printf("Rooks on Open Files: %4d\r\n", scoreRooksOnOpenFiles);
         //System.out.printf("Before Draw Prob.:   %4d\r\n", score);
 
-        final int materialValueNoPawnToMove = toMove == BLACK? materialValueNoPawnBlack: materialValueNoPawnWhite;
         if (score * signum > 0 && materialValueNoPawnToMove <= VAL_PIECE_COUNTS[BISHOP][2]) {
             score *= (1.0 - drawProbability(board));
             //System.out.printf("After Draw Prob.   : %4d\r\n", score);
@@ -768,6 +750,20 @@ public final class Evaluation {
         return score;
     }
 
+    public static int computePositionalBonusOneSide(final Board board, final int side,
+                                                    final int[][] positionalBonus) {
+        final int shift = SHIFT_POSITION_BONUS[side];
+        int score = 0;
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            final int[] pieces = board.getPieces(side, type);
+            final int[] typeBonus = positionalBonus[type];
+            for (int i = pieces[0]; i > 0; i--) {
+                score += typeBonus[pieces[i] + shift];
+            }
+        }
+        return score;
+    }
+
     public static int computePositionalGain(final int absPiece, final int fromPos, final int toPos,
                                             final int stage, final int shift) {
         final int[] typeBonusOpening = VAL_POSITION_BONUS_OPENING[absPiece];
@@ -992,7 +988,7 @@ public final class Evaluation {
         final int[] positionalBonusOpening = VAL_POSITION_BONUS_OPENING[PAWN];
         final int[] positionalBonusEndGame = VAL_POSITION_BONUS_ENDGAME[PAWN];
 
-        long[] pawnMask = new long[2];
+        final long[] pawnMask = new long[] {board.getBitboard(BLACK, PAWN), board.getBitboard(WHITE, PAWN)};
         long[] pawnAttackMask = new long[2];
         final int[] whitePawns = board.getPieces(WHITE, PAWN);
         int pawnStormBonus = 0;
@@ -1000,7 +996,6 @@ public final class Evaluation {
         for (int i = whitePawnCount; i > 0; i--) {
             final int pawn = whitePawns[i];
             final int pawn64 = convert0x88To64(pawn);
-            pawnMask[WHITE] |= 1L << pawn64;
             final long pawnAttack = PAWN_ATTACK[WHITE][pawn64];
             pawnAttackMask[WHITE] |= pawnAttack;
             score += (blackKingMask & pawnAttack) > 0? BONUS_KING_IN_SIGHT_NON_SLIDING: 0;
@@ -1027,7 +1022,6 @@ public final class Evaluation {
         for (int i = blackPawnCount; i > 0; i--) {
             final int pawn = blackPawns[i];
             final int pawn64 = convert0x88To64(pawn);
-            pawnMask[BLACK] |= 1L << pawn64;
             final long pawnAttack = PAWN_ATTACK[BLACK][pawn64];
             pawnAttackMask[BLACK] |= pawnAttack;
             score -= (whiteKingMask & pawnAttack) > 0? BONUS_KING_IN_SIGHT_NON_SLIDING: 0;
@@ -1223,6 +1217,32 @@ public final class Evaluation {
         return pawnHashTable;
     }
 
+    public long getLazyEvalCheckCount() {
+        return lazyEvalCheckCount;
+    }
+
+    public long getLazyEvalCutCount() {
+        return lazyEvalCutCount;
+    }
+
+    public void resetLazyEvalCounts() {
+        lazyEvalCheckCount = 0;
+        lazyEvalCutCount = 0;
+    }
+
+    public long getEvalHashProbeCount() {
+        return evalHashProbeCount;
+    }
+
+    public long getEvalHashHitCount() {
+        return evalHashHitCount;
+    }
+
+    public void resetEvalHashCounts() {
+        evalHashProbeCount = 0;
+        evalHashHitCount = 0;
+    }
+
     public void clear() {
         evalHashTable.clear();
         pawnHashTable.clear();
@@ -0,0 +1,156 @@
+package sf.pnr.base;
+
+/**
+ */
+public final class MagicBitBoard {
+    private static final int[] DELTA_FILE_ROOK = {1, -1, 0, 0};
+    private static final int[] DELTA_RANK_ROOK = {0, 0, 1, -1};
+    private static final int[] DELTA_FILE_BISHOP = {1, 1, -1, -1};
+    private static final int[] DELTA_RANK_BISHOP = {1, -1, 1, -1};
+
+    // generated by sf.pnr.tools.MagicNumberGenerator
+    private static final long[] ROOK_MAGIC = new long[]{
+		0x0C80048010400020L, 0x2D00108104400020L, 0x09000830E0024100L, 0x0080080010008004L,
+		0x0200020004091020L, 0x8A00040881020010L, 0x020002004810830CL, 0x2480008008402100L,
+		0x8402002041020081L, 0x40A0C00020100040L, 0x0004801000200082L, 0x0101000810010020L,
+		0xE109801400800800L, 0x450A000200045028L, 0x0084001041082204L, 0x8470800041000080L,
+		0x028000C00040A000L, 0x0040808020004006L, 0x0310808010002000L, 0x608101002010000AL,
+		0x9628004004004201L, 0x0806008004008002L, 0x0010040002288110L, 0x0000020001004084L,
+		0x0800420200208100L, 0x8018210100400086L, 0x0400200080100080L, 0x0500100080800800L,
+		0x8008041100080100L, 0x3110020080800400L, 0x4250088400020110L, 0x110004020005B041L,
+		0x0180002000404000L, 0x0420003000C00044L, 0x8010820412002240L, 0x1028801000800800L,
+		0x0882001846003020L, 0x0024001002020008L, 0x0105089004004102L, 0x2C0104A40A000051L,
+		0x0000800040038020L, 0x0050400089010020L, 0x287000200080801AL, 0x8010100008008080L,
+		0x8204008008008004L, 0x0086820004008080L, 0x0C82004001004080L, 0x0000004081020014L,
+		0x0410801040002880L, 0x0202812009401080L, 0x4000802000100080L, 0x1404120042200A00L,
+		0x4000080080040080L, 0xC202000400028080L, 0x8000106801021400L, 0x200081040040A200L,
+		0xC004201100800043L, 0x2001008010284001L, 0x2080220040088012L, 0xC0CA002008401006L,
+		0x0002009020053812L, 0x0805000400385201L, 0x002810130802149CL, 0x0002088904C40022L};
+    private static final long[] BISHOP_MAGIC = new long[]{
+		0x00400101020A0244L, 0x20201404C20140B1L, 0x000850C302009050L, 0x4750908208004080L,
+		0x2004242000010114L, 0x0091100804000040L, 0x1000841042120061L, 0x0800410090100208L,
+		0x458B881004880044L, 0x0208080A44340621L, 0x0000048104010004L, 0x0100084481001201L,
+		0x0010140308000000L, 0x1C51020802082000L, 0x8002404124202000L, 0x12004100AA101220L,
+		0x814010700408A080L, 0x06602A8302040900L, 0x000A101000801300L, 0x0004000840410800L,
+		0x2010100202105000L, 0x1000200A00902806L, 0x00020002511420E1L, 0x8000200244121800L,
+		0xA321390020060400L, 0x0802208003080A00L, 0x0011441808080210L, 0x0040404014010200L,
+		0x0911004024004044L, 0x0805020003004100L, 0x4011020000421042L, 0x2400410008841148L,
+		0x8008050404102000L, 0x1014012001288202L, 0x032146A808100140L, 0x3402004040440102L,
+		0x4610008220020200L, 0x8004080208549002L, 0x242800C410008200L, 0x0042005204210088L,
+		0x1404120805004004L, 0x0280411030086804L, 0x000A002608041440L, 0x00A190A019080800L,
+		0x0020080100444400L, 0x9042040800200200L, 0x8C10010810804101L, 0x0208121040420601L,
+		0x0240840108400041L, 0x020A840432620080L, 0x8084024424040081L, 0x4040044210440018L,
+		0x0181000810240020L, 0x0019101010053001L, 0x5008422404040440L, 0x1008580850404400L,
+		0x008205808C101200L, 0x4060908401280200L, 0x0820400844041140L, 0x2000800400420200L,
+		0x0001000010820200L, 0x01E06211200811C1L, 0x2804042114411200L, 0x0011100088008420L};
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_ATTACKS;
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_ATTACKS;
+
+    static {
+        ROOK_ATTACKS = init(DELTA_FILE_ROOK, DELTA_RANK_ROOK, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+        BISHOP_ATTACKS = init(DELTA_FILE_BISHOP, DELTA_RANK_BISHOP, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+    }
+
+    private MagicBitBoard() {
+    }
+
+    public static long getRookAttacks(final int pos64, final long occupied) {
+        final int index = (int) (((occupied & ROOK_MASK[pos64]) * ROOK_MAGIC[pos64]) >>> ROOK_SHIFT[pos64]);
+        return ROOK_ATTACKS[ROOK_OFFSET[pos64] + index];
+    }
+
+    public static long getBishopAttacks(final int pos64, final long occupied) {
+        final int index = (int) (((occupied & BISHOP_MASK[pos64]) * BISHOP_MAGIC[pos64]) >>> BISHOP_SHIFT[pos64]);
+        return BISHOP_ATTACKS[BISHOP_OFFSET[pos64] + index];
+    }
+
+    public static long getQueenAttacks(final int pos64, final long occupied) {
+        return getRookAttacks(pos64, occupied) | getBishopAttacks(pos64, occupied);
+    }
+
+    private static long computeAttacks(final int[] deltaFile, final int[] deltaRank, final int pos64,
+                                       final long occupied) {
+        long attacks = 0L;
+        for (int i = 0; i < deltaFile.length; i++) {
+            int file = (pos64 & 0x07) + deltaFile[i];
+            int rank = (pos64 >> 3) + deltaRank[i];
+            while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                final long bit = 1L << ((rank << 3) | file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += deltaFile[i];
+                rank += deltaRank[i];
+            }
+        }
+        return attacks;
+    }
+
+    public static long computeRookAttacks(final int pos64, final long occupied) {
+        return computeAttacks(DELTA_FILE_ROOK, DELTA_RANK_ROOK, pos64, occupied);
+    }
+
+    public static long computeBishopAttacks(final int pos64, final long occupied) {
+        return computeAttacks(DELTA_FILE_BISHOP, DELTA_RANK_BISHOP, pos64, occupied);
+    }
+
+    public static long computeRookMask(final int pos64) {
+        return computeMask(DELTA_FILE_ROOK, DELTA_RANK_ROOK, pos64);
+    }
+
+    public static long computeBishopMask(final int pos64) {
+        return computeMask(DELTA_FILE_BISHOP, DELTA_RANK_BISHOP, pos64);
+    }
+
+    private static long computeMask(final int[] deltaFile, final int[] deltaRank, final int pos64) {
+        long mask = 0L;
+        for (int i = 0; i < deltaFile.length; i++) {
+            int file = (pos64 & 0x07) + deltaFile[i];
+            int rank = (pos64 >> 3) + deltaRank[i];
+            // the last square of a ray is attacked regardless of its occupancy
+            while (file + deltaFile[i] >= 0 && file + deltaFile[i] < 8 &&
+                    rank + deltaRank[i] >= 0 && rank + deltaRank[i] < 8) {
+                mask |= 1L << ((rank << 3) | file);
+                file += deltaFile[i];
+                rank += deltaRank[i];
+            }
+        }
+        return mask;
+    }
+
+    private static long[] init(final int[] deltaFile, final int[] deltaRank, final long[] masks, final long[] magics,
+                               final int[] shifts, final int[] offsets) {
+        int size = 0;
+        for (int pos64 = 0; pos64 < 64; pos64++) {
+            masks[pos64] = computeMask(deltaFile, deltaRank, pos64);
+            offsets[pos64] = size;
+            final int bits = Long.bitCount(masks[pos64]);
+            shifts[pos64] = 64 - bits;
+            size += 1 << bits;
+        }
+        final long[] attacks = new long[size];
+        for (int pos64 = 0; pos64 < 64; pos64++) {
+            final long mask = masks[pos64];
+            long subset = 0L;
+            do {
+                final int index = offsets[pos64] + (int) ((subset * magics[pos64]) >>> shifts[pos64]);
+                final long attacked = computeAttacks(deltaFile, deltaRank, pos64, subset);
+                if (attacks[index] != 0 && attacks[index] != attacked) {
+                    throw new IllegalStateException("Magic number collision on square " + pos64);
+                }
+                attacks[index] = attacked;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+        }
+        return attacks;
+    }
+}
@@ -3,6 +3,7 @@ package sf.pnr.base;
 import sf.pnr.alg.ReinitStack;
 import sf.pnr.alg.Reinitialiseable;
 
+import static sf.pnr.base.BitBoard.*;
 import static sf.pnr.base.Evaluation.*;
 import static sf.pnr.base.Utils.*;
 
@@ -13,14 +14,24 @@ public final class MoveGenerator {
     private static final int MAX_CAPTURE_COUNT = 32;
     private static final int MAX_PROMOTION_COUNT = 32;
 
+    // slider attacks come from the magic tables, or are computed by walking the rays when switched off
+    @Configurable(Configurable.Key.MOVE_GENERATOR_MAGIC_BITBOARDS)
+    private static boolean MAGIC_BITBOARDS = true;
+
     private final ReinitStack<Frame> frames = new ReinitStack<Frame>(Frame.class, MAX_SEARCH_DEPTH);
     private final int[] seeDefenders;
     private final int[] seeList;
     private final int[] seeAttackers;
     private final int[] valDefenders;
     private final int[] valAttackers;
+    private final boolean magicBitboards;
 
     public MoveGenerator() {
+        this(MAGIC_BITBOARDS);
+    }
+
+    public MoveGenerator(final boolean magicBitboards) {
+        this.magicBitboards = magicBitboards;
         seeDefenders = new int[32];
         seeList = new int[32];
         seeAttackers = new int[32];
@@ -36,8 +47,26 @@ public final class MoveGenerator {
         moves[0] = 0;
 
         final int toMove = board.getState() & WHITE_TO_MOVE;
-        int capturesIdx = 0;
-        int idx = 0;
+        if (magicBitboards) {
+            generatePseudoLegalMovesSlidersMagic(board, frame, toMove);
+        } else {
+            generatePseudoLegalMovesSliders(board, frame, toMove);
+        }
+        generatePseudoLegalMovesKnight(board, frame, toMove);
+        generatePseudoLegalMovesKing(board, frame);
+        generatePseudoLegalMovesPawnCapture(board, captures);
+        final int state = board.getState();
+        final int enPassant = state & EN_PASSANT;
+        if (enPassant != 0) {
+            generateEnPassantMoves(board, captures);
+        }
+	}
+
+    private void generatePseudoLegalMovesSliders(final Board board, final Frame frame, final int toMove) {
+        final int[] captures = frame.getCaptures();
+        final int[] moves = frame.getMoves();
+        int capturesIdx = captures[0];
+        int idx = moves[0];
         final int[] queens = board.getPieces(toMove, QUEEN);
         final int[] squares = board.getBoard();
         final int[] queenDeltas = DELTA[QUEEN];
@@ -101,15 +130,399 @@ public final class MoveGenerator {
         }
         captures[0] = capturesIdx;
         moves[0] = idx;
-        generatePseudoLegalMovesKnight(board, frame, toMove);
-        generatePseudoLegalMovesKing(board, frame);
+    }
+
+    private void generatePseudoLegalMovesSlidersMagic(final Board board, final Frame frame, final int toMove) {
+        final long own = board.getBitboard(toMove);
+        final long opponent = board.getBitboard(1 - toMove);
+        final long occupied = own | opponent;
+        final int[] queens = board.getPieces(toMove, QUEEN);
+        for (int i = queens[0]; i > 0; i--) {
+            final int queen = queens[i];
+            final long attacks = MagicBitBoard.getQueenAttacks(convert0x88To64(queen), occupied);
+            addSliderMoves(frame, queen, attacks & ~occupied, attacks & opponent);
+        }
+        final int[] rooks = board.getPieces(toMove, ROOK);
+        for (int i = rooks[0]; i > 0; i--) {
+            final int rook = rooks[i];
+            final long attacks = MagicBitBoard.getRookAttacks(convert0x88To64(rook), occupied);
+            addSliderMoves(frame, rook, attacks & ~occupied, attacks & opponent);
+        }
+        final int[] bishops = board.getPieces(toMove, BISHOP);
+        for (int i = bishops[0]; i > 0; i--) {
+            final int bishop = bishops[i];
+            final long attacks = MagicBitBoard.getBishopAttacks(convert0x88To64(bishop), occupied);
+            addSliderMoves(frame, bishop, attacks & ~occupied, attacks & opponent);
+        }
+    }
+
+    private static void addSliderMoves(final Frame frame, final int from, long quiet, long captured) {
+        final int[] moves = frame.getMoves();
+        int idx = moves[0];
+        while (quiet != 0) {
+            final int pos = convert64To0x88(Long.numberOfTrailingZeros(quiet));
+            moves[++idx] = (pos << SHIFT_TO) | from;
+            quiet &= quiet - 1;
+        }
+        moves[0] = idx;
+        final int[] captures = frame.getCaptures();
+        int capturesIdx = captures[0];
+        while (captured != 0) {
+            final int pos = convert64To0x88(Long.numberOfTrailingZeros(captured));
+            captures[++capturesIdx] = (pos << SHIFT_TO) | from;
+            captured &= captured - 1;
+        }
+        captures[0] = capturesIdx;
+    }
+
+    public void generateCaptures(final Board board) {
+        final Frame frame = frames.peek();
+        final int[] captures = frame.getCaptures();
+        captures[0] = 0;
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        final long opponents = board.getBitboard(1 - toMove);
+        final long occupied = board.getBitboard(toMove) | opponents;
+        final long queens = board.getBitboard(toMove, QUEEN);
+        long straight = board.getBitboard(toMove, ROOK) | queens;
+        while (straight != 0) {
+            final int from64 = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            addMoves(captures, convert64To0x88(from64), getRookAttacks(from64, occupied) & opponents);
+        }
+        long diagonal = board.getBitboard(toMove, BISHOP) | queens;
+        while (diagonal != 0) {
+            final int from64 = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            addMoves(captures, convert64To0x88(from64), getBishopAttacks(from64, occupied) & opponents);
+        }
+        long knights = board.getBitboard(toMove, KNIGHT);
+        while (knights != 0) {
+            final int from64 = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(captures, convert64To0x88(from64), KNIGHT_MOVES[from64] & opponents);
+        }
+        final int[] squares = board.getBoard();
+        final int signumOpponent = 1 - (toMove << 1);
+        final int kingPos = board.getKing(toMove);
+        long kingCaptures = KING_MOVES[convert0x88To64(kingPos)] & opponents;
+        while (kingCaptures != 0) {
+            final int toPos = convert64To0x88(Long.numberOfTrailingZeros(kingCaptures));
+            kingCaptures &= kingCaptures - 1;
+            captures[++captures[0]] =
+                (toPos << SHIFT_TO) | kingPos | (VAL_PIECES[signumOpponent * squares[toPos]] << SHIFT_MOVE_VALUE);
+        }
         generatePseudoLegalMovesPawnCapture(board, captures);
-        final int state = board.getState();
-        final int enPassant = state & EN_PASSANT;
-        if (enPassant != 0) {
+        if ((board.getState() & EN_PASSANT) != 0) {
             generateEnPassantMoves(board, captures);
         }
-	}
+    }
+
+    public void generatePromotions(final Board board) {
+        final int[] promotions = frames.peek().getPromotions();
+        promotions[0] = 0;
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        final long empty = ~(board.getBitboard(WHITE) | board.getBitboard(BLACK));
+        final long pawns = board.getBitboard(toMove, PAWN);
+        long pushes;
+        if (toMove == WHITE) {
+            pushes = ((pawns & BITBOARD_RANK[6]) << 8) & empty;
+        } else {
+            pushes = ((pawns & BITBOARD_RANK[1]) >>> 8) & empty;
+        }
+        final int delta64 = (toMove << 4) - 8;
+        while (pushes != 0) {
+            final int to64 = Long.numberOfTrailingZeros(pushes);
+            pushes &= pushes - 1;
+            addPawnMove(promotions, (convert64To0x88(to64) << SHIFT_TO) | convert64To0x88(to64 - delta64), 0);
+        }
+    }
+
+    public void generateQuietMoves(final Board board) {
+        final int[] moves = frames.peek().getMoves();
+        moves[0] = 0;
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        final long occupied = board.getBitboard(WHITE) | board.getBitboard(BLACK);
+        final long empty = ~occupied;
+        final long queens = board.getBitboard(toMove, QUEEN);
+        long straight = board.getBitboard(toMove, ROOK) | queens;
+        while (straight != 0) {
+            final int from64 = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            addMoves(moves, convert64To0x88(from64), getRookAttacks(from64, occupied) & empty);
+        }
+        long diagonal = board.getBitboard(toMove, BISHOP) | queens;
+        while (diagonal != 0) {
+            final int from64 = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            addMoves(moves, convert64To0x88(from64), getBishopAttacks(from64, occupied) & empty);
+        }
+        long knights = board.getBitboard(toMove, KNIGHT);
+        while (knights != 0) {
+            final int from64 = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(moves, convert64To0x88(from64), KNIGHT_MOVES[from64] & empty);
+        }
+        final int kingPos = board.getKing(toMove);
+        addMoves(moves, kingPos, KING_MOVES[convert0x88To64(kingPos)] & empty);
+
+        // pawn pushes, promotions are generated separately
+        final long pawns = board.getBitboard(toMove, PAWN);
+        final long singlePushes;
+        final long doublePushes;
+        if (toMove == WHITE) {
+            singlePushes = ((pawns & ~BITBOARD_RANK[6]) << 8) & empty;
+            doublePushes = ((singlePushes & BITBOARD_RANK[2]) << 8) & empty;
+        } else {
+            singlePushes = ((pawns & ~BITBOARD_RANK[1]) >>> 8) & empty;
+            doublePushes = ((singlePushes & BITBOARD_RANK[5]) >>> 8) & empty;
+        }
+        final int delta64 = (toMove << 4) - 8;
+        addPawnPushes(moves, singlePushes, delta64);
+        addPawnPushes(moves, doublePushes, delta64 << 1);
+        generateCastling(board, moves);
+    }
+
+    private long getRookAttacks(final int pos64, final long occupied) {
+        if (magicBitboards) {
+            return MagicBitBoard.getRookAttacks(pos64, occupied);
+        }
+        return MagicBitBoard.computeRookAttacks(pos64, occupied);
+    }
+
+    private long getBishopAttacks(final int pos64, final long occupied) {
+        if (magicBitboards) {
+            return MagicBitBoard.getBishopAttacks(pos64, occupied);
+        }
+        return MagicBitBoard.computeBishopAttacks(pos64, occupied);
+    }
+
+    private static void addMoves(final int[] moves, final int fromPos, long targets) {
+        int idx = moves[0];
+        while (targets != 0) {
+            moves[++idx] = (convert64To0x88(Long.numberOfTrailingZeros(targets)) << SHIFT_TO) | fromPos;
+            targets &= targets - 1;
+        }
+        moves[0] = idx;
+    }
+
+    private static void addPawnPushes(final int[] moves, long targets, final int delta64) {
+        int idx = moves[0];
+        while (targets != 0) {
+            final int to64 = Long.numberOfTrailingZeros(targets);
+            moves[++idx] = (convert64To0x88(to64) << SHIFT_TO) | convert64To0x88(to64 - delta64);
+            targets &= targets - 1;
+        }
+        moves[0] = idx;
+    }
+
+    public void computeCheckAndPins(final Board board) {
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        final int opponent = 1 - toMove;
+        final int king64 = convert0x88To64(board.getKing(toMove));
+        final long own = board.getBitboard(toMove);
+        final long occupied = own | board.getBitboard(opponent);
+        final long checkers = board.getAttackers64(king64, opponent, occupied);
+        final long queens = board.getBitboard(opponent, QUEEN);
+        long snipers = ((board.getBitboard(opponent, ROOK) | queens) & getRookAttacks(king64, 0L)) |
+            ((board.getBitboard(opponent, BISHOP) | queens) & getBishopAttacks(king64, 0L));
+        long pinned = 0L;
+        while (snipers != 0) {
+            final long blockers = BITBOARD_BETWEEN[king64][Long.numberOfTrailingZeros(snipers)] & occupied;
+            if ((blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & own;
+            }
+            snipers &= snipers - 1;
+        }
+        final long checkMask;
+        if (checkers == 0) {
+            checkMask = -1L;
+        } else if ((checkers & (checkers - 1)) == 0) {
+            checkMask = BITBOARD_BETWEEN[king64][Long.numberOfTrailingZeros(checkers)] | checkers;
+        } else {
+            checkMask = 0L;
+        }
+        frames.peek().setCheckAndPins(king64, checkers, pinned, checkMask);
+    }
+
+    public boolean isInCheck() {
+        return frames.peek().getCheckers() != 0;
+    }
+
+    public boolean isLegal(final Board board, final int move) {
+        final Frame frame = frames.peek();
+        final int king64 = frame.getKing64();
+        final int fromPos64 = convert0x88To64(getFromPosition(move));
+        final int toPos64 = convert0x88To64(getToPosition(move));
+        final int moveType = move & MOVE_TYPE;
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        if (fromPos64 == king64) {
+            if (moveType == MT_CASTLING_KINGSIDE || moveType == MT_CASTLING_QUEENSIDE) {
+                // castling is only generated when the king doesn't pass through attacked squares
+                return true;
+            }
+            final long occupied = (board.getBitboard(WHITE) | board.getBitboard(BLACK)) ^ (1L << king64);
+            return !board.isAttacked64(toPos64, 1 - toMove, occupied);
+        }
+        final long checkers = frame.getCheckers();
+        if ((checkers & (checkers - 1)) != 0) {
+            // double check, only the king can move
+            return false;
+        }
+        if (moveType == MT_EN_PASSANT) {
+            // two pawns leave the same rank, just try it
+            final long undo = board.move(move);
+            final boolean legal = !board.attacksKing(1 - toMove);
+            board.takeBack(undo);
+            return legal;
+        }
+        final long toMask = 1L << toPos64;
+        return (frame.getCheckMask() & toMask) != 0 &&
+            ((frame.getPinned() & (1L << fromPos64)) == 0 || (BITBOARD_LINE[king64][fromPos64] & toMask) != 0);
+    }
+
+    public void generateEvasions(final Board board) {
+        final Frame frame = frames.peek();
+        final int[] captures = frame.getCaptures();
+        final int[] moves = frame.getMoves();
+        final int[] promotions = frame.getPromotions();
+        captures[0] = 0;
+        moves[0] = 0;
+        promotions[0] = 0;
+        assert frame.getCheckers() != 0;
+
+        final int toMove = board.getState() & WHITE_TO_MOVE;
+        final int opponent = 1 - toMove;
+        final int signumOpponent = 1 - (toMove << 1);
+        final int[] squares = board.getBoard();
+        final long own = board.getBitboard(toMove);
+        final long opponents = board.getBitboard(opponent);
+        final long occupied = own | opponents;
+        final int king64 = frame.getKing64();
+        final int kingPos = convert64To0x88(king64);
+
+        // king moves
+        long kingMoves = KING_MOVES[king64] & ~own;
+        final long occupiedWithoutKing = occupied ^ (1L << king64);
+        while (kingMoves != 0) {
+            final int to64 = Long.numberOfTrailingZeros(kingMoves);
+            kingMoves &= kingMoves - 1;
+            if (!board.isAttacked64(to64, opponent, occupiedWithoutKing)) {
+                final int toPos = convert64To0x88(to64);
+                final int move = (toPos << SHIFT_TO) | kingPos;
+                if (squares[toPos] == EMPTY) {
+                    moves[++moves[0]] = move;
+                } else {
+                    captures[++captures[0]] = move | (VAL_PIECES[signumOpponent * squares[toPos]] << SHIFT_MOVE_VALUE);
+                }
+            }
+        }
+
+        final long checkers = frame.getCheckers();
+        if ((checkers & (checkers - 1)) != 0) {
+            // double check, only the king can move
+            return;
+        }
+        final long checkMask = frame.getCheckMask();
+        final long movable = own & ~frame.getPinned();
+
+        // knights and sliders capturing the checker or blocking the check
+        long knights = board.getBitboard(toMove, KNIGHT) & movable;
+        while (knights != 0) {
+            final int from64 = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addEvasions(frame, convert64To0x88(from64), KNIGHT_MOVES[from64] & checkMask, opponents);
+        }
+        final long queens = board.getBitboard(toMove, QUEEN);
+        long straight = (board.getBitboard(toMove, ROOK) | queens) & movable;
+        while (straight != 0) {
+            final int from64 = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            addEvasions(frame, convert64To0x88(from64),
+                getRookAttacks(from64, occupied) & checkMask, opponents);
+        }
+        long diagonal = (board.getBitboard(toMove, BISHOP) | queens) & movable;
+        while (diagonal != 0) {
+            final int from64 = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            // queens get their straight moves above and their diagonal moves here
+            addEvasions(frame, convert64To0x88(from64),
+                getBishopAttacks(from64, occupied) & checkMask, opponents);
+        }
+
+        // pawns capturing the checker or blocking the check
+        final long[] pawnAttacks = PAWN_ATTACK[toMove];
+        final int delta64 = (toMove << 4) - 8;
+        long pawns = board.getBitboard(toMove, PAWN) & movable;
+        while (pawns != 0) {
+            final int from64 = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            final int fromPos = convert64To0x88(from64);
+            long captured = pawnAttacks[from64] & checkers;
+            if (captured != 0) {
+                final int toPos = convert64To0x88(Long.numberOfTrailingZeros(captured));
+                final int captureValue = VAL_PIECES[signumOpponent * squares[toPos]] - (VAL_PAWN >> 1);
+                addPawnMove(captures, (toPos << SHIFT_TO) | fromPos, captureValue);
+            }
+            final int push64 = from64 + delta64;
+            if ((occupied & (1L << push64)) == 0) {
+                if ((checkMask & (1L << push64)) != 0) {
+                    final int toPos = convert64To0x88(push64);
+                    final int toRank = getRank(toPos);
+                    if (toRank == 0 || toRank == 7) {
+                        addPawnMove(promotions, (toPos << SHIFT_TO) | fromPos, 0);
+                    } else {
+                        moves[++moves[0]] = (toPos << SHIFT_TO) | fromPos;
+                    }
+                }
+                final int fromRank = getRank(fromPos);
+                final int doublePush64 = push64 + delta64;
+                if ((fromRank == 1 && toMove == WHITE || fromRank == 6 && toMove == BLACK) &&
+                        (occupied & (1L << doublePush64)) == 0 && (checkMask & (1L << doublePush64)) != 0) {
+                    moves[++moves[0]] = (convert64To0x88(doublePush64) << SHIFT_TO) | fromPos;
+                }
+            }
+        }
+
+        // en passant capture of the checking pawn (or blocking with it)
+        if ((board.getState() & EN_PASSANT) != 0) {
+            final int count = captures[0];
+            generateEnPassantMoves(board, captures);
+            int idx = count;
+            for (int i = count + 1; i <= captures[0]; i++) {
+                if (isLegal(board, captures[i])) {
+                    captures[++idx] = captures[i];
+                }
+            }
+            captures[0] = idx;
+        }
+    }
+
+    private static void addEvasions(final Frame frame, final int fromPos, long targets, final long opponents) {
+        while (targets != 0) {
+            final int to64 = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            final int move = (convert64To0x88(to64) << SHIFT_TO) | fromPos;
+            if ((opponents & (1L << to64)) != 0) {
+                final int[] captures = frame.getCaptures();
+                captures[++captures[0]] = move;
+            } else {
+                final int[] moves = frame.getMoves();
+                moves[++moves[0]] = move;
+            }
+        }
+    }
+
+    private static void addPawnMove(final int[] moves, final int move, final int captureValue) {
+        final int toRank = getRank(getToPosition(move));
+        if (toRank == 0 || toRank == 7) {
+            moves[++moves[0]] = move | MT_PROMOTION_QUEEN | ((VAL_QUEEN - VAL_PAWN + captureValue) << SHIFT_MOVE_VALUE);
+            moves[++moves[0]] = move | MT_PROMOTION_ROOK | ((VAL_ROOK - VAL_PAWN + captureValue) << SHIFT_MOVE_VALUE);
+            moves[++moves[0]] = move | MT_PROMOTION_BISHOP | ((VAL_BISHOP - VAL_PAWN + captureValue) << SHIFT_MOVE_VALUE);
+            moves[++moves[0]] = move | MT_PROMOTION_KNIGHT | ((VAL_KNIGHT - VAL_PAWN + captureValue) << SHIFT_MOVE_VALUE);
+        } else {
+            moves[++moves[0]] = move | (captureValue << SHIFT_MOVE_VALUE);
+        }
+    }
 
     public void generatePseudoLegalMovesKing(final Board board, final Frame frame) {
         final int state = board.getState();
@@ -509,6 +922,10 @@ public final class MoveGenerator {
         private final int[] captures;
         private final int[] losingCaptures;
         private final int[] promotions;
+        private int king64;
+        private long checkers;
+        private long pinned;
+        private long checkMask;
 
         public Frame() {
             moves = new int[MAX_MOVE_COUNT];
@@ -539,5 +956,28 @@ public final class MoveGenerator {
         public int[] getLosingCaptures() {
             return losingCaptures;
         }
+
+        public void setCheckAndPins(final int king64, final long checkers, final long pinned, final long checkMask) {
+            this.king64 = king64;
+            this.checkers = checkers;
+            this.pinned = pinned;
+            this.checkMask = checkMask;
+        }
+
+        public int getKing64() {
+            return king64;
+        }
+
+        public long getCheckers() {
+            return checkers;
+        }
+
+        public long getPinned() {
+            return pinned;
+        }
+
+        public long getCheckMask() {
+            return checkMask;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package sf.pnr.base;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ */
+public final class Perft {
+
+    public static final int DEFAULT_HASH_SIZE_MB = 16;
+
+    // mixed into the zobrist key so the same position at different depths lands in different slots
+    private static final long DEPTH_SALT = 0x9E3779B97F4A7C15L;
+    // two longs per slot have to fit into one array
+    private static final int MAX_HASH_SLOTS = 1 << 29;
+
+    private final ForkJoinPool pool;
+    private final boolean magicBitboards;
+    // two longs per slot: (key ^ count, count), a torn write fails the key check instead of returning garbage
+    private final long[] hash;
+    private final int hashMask;
+
+    public Perft() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_HASH_SIZE_MB, false);
+    }
+
+    public Perft(final int threads, final int hashSizeMB, final boolean magicBitboards) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        if (hashSizeMB < 0) {
+            throw new IllegalArgumentException("Hash size must not be negative: " + hashSizeMB);
+        }
+        pool = new ForkJoinPool(threads);
+        this.magicBitboards = magicBitboards;
+        if (hashSizeMB > 0) {
+            final int slots = (int) Long.highestOneBit(Math.min(hashSizeMB * 1024L * 1024 / 16, MAX_HASH_SLOTS));
+            hash = new long[slots << 1];
+            hashMask = slots - 1;
+        } else {
+            hash = null;
+            hashMask = 0;
+        }
+    }
+
+    public long perft(final Board board, final int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long total = 0;
+        for (long count: divide(board, depth).values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the leaf nodes below each legal root move, the root moves are searched in parallel.
+     * @return node counts keyed by the root move, in generation order
+     */
+    public Map<Integer, Long> divide(final Board board, final int depth) {
+        final Map<Integer, Long> result = new LinkedHashMap<Integer, Long>();
+        if (depth <= 0) {
+            return result;
+        }
+        final int[] rootMoves = getLegalMoves(board, new MoveGenerator(magicBitboards));
+        final List<RootMoveTask> tasks = new ArrayList<RootMoveTask>(rootMoves.length);
+        for (int move: rootMoves) {
+            tasks.add(new RootMoveTask(board.deepCopy(), move, depth - 1));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (RootMoveTask task: tasks) {
+            result.put(task.move, task.join());
+        }
+        return result;
+    }
+
+    public void clear() {
+        if (hash != null) {
+            for (int i = 0; i < hash.length; i++) {
+                hash[i] = 0;
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private long count(final Board board, final int depth, final MoveGenerator moveGenerator) {
+        if (depth == 0) {
+            return 1;
+        }
+        final long key = board.getZobristKey() ^ (depth * DEPTH_SALT);
+        final int index = ((int) key & hashMask) << 1;
+        if (hash != null && depth > 1) {
+            final long count = hash[index + 1];
+            if ((hash[index] ^ count) == key) {
+                return count;
+            }
+        }
+        moveGenerator.pushFrame();
+        generateMoves(board, moveGenerator);
+        long count = countMoves(board, depth, moveGenerator, moveGenerator.getCaptures());
+        count += countMoves(board, depth, moveGenerator, moveGenerator.getPromotions());
+        count += countMoves(board, depth, moveGenerator, moveGenerator.getMoves());
+        moveGenerator.popFrame();
+        if (hash != null && depth > 1) {
+            hash[index] = key ^ count;
+            hash[index + 1] = count;
+        }
+        return count;
+    }
+
+    private long countMoves(final Board board, final int depth, final MoveGenerator moveGenerator,
+                            final int[] moves) {
+        long count = 0;
+        for (int i = moves[0]; i > 0; i--) {
+            final int move = moves[i];
+            if (!moveGenerator.isLegal(board, move)) {
+                continue;
+            }
+            if (depth == 1) {
+                // bulk counting: the leaves don't have to be played
+                count++;
+            } else {
+                final long undo = board.move(move);
+                count += count(board, depth - 1, moveGenerator);
+                board.takeBack(undo);
+            }
+        }
+        return count;
+    }
+
+    private static int[] getLegalMoves(final Board board, final MoveGenerator moveGenerator) {
+        moveGenerator.pushFrame();
+        generateMoves(board, moveGenerator);
+        final int[] captures = moveGenerator.getCaptures();
+        final int[] promotions = moveGenerator.getPromotions();
+        final int[] moves = moveGenerator.getMoves();
+        final int[] buffer = new int[captures[0] + promotions[0] + moves[0]];
+        int count = 0;
+        for (int[] list: new int[][] {captures, promotions, moves}) {
+            for (int i = 1; i <= list[0]; i++) {
+                if (moveGenerator.isLegal(board, list[i])) {
+                    buffer[count++] = list[i];
+                }
+            }
+        }
+        moveGenerator.popFrame();
+        final int[] legalMoves = new int[count];
+        System.arraycopy(buffer, 0, legalMoves, 0, count);
+        return legalMoves;
+    }
+
+    private static void generateMoves(final Board board, final MoveGenerator moveGenerator) {
+        moveGenerator.computeCheckAndPins(board);
+        if (moveGenerator.isInCheck()) {
+            moveGenerator.generateEvasions(board);
+        } else {
+            moveGenerator.generatePseudoLegalMoves(board);
+            moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+        }
+    }
+
+    private final class RootMoveTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int move;
+        private final int depth;
+
+        private RootMoveTask(final Board board, final int move, final int depth) {
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            board.move(move);
+            return count(board, depth, new MoveGenerator(magicBitboards));
+        }
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [divide] [FEN]");
+            return;
+        }
+        final int depth = Integer.parseInt(args[0]);
+        int fenStart = 1;
+        final boolean divide = args.length > 1 && "divide".equals(args[1]);
+        if (divide) {
+            fenStart++;
+        }
+        final Board board;
+        if (args.length > fenStart) {
+            final StringBuilder fen = new StringBuilder();
+            for (int i = fenStart; i < args.length; i++) {
+                if (fen.length() > 0) {
+                    fen.append(' ');
+                }
+                fen.append(args[i]);
+            }
+            board = StringUtils.fromFen(fen.toString());
+        } else {
+            board = new Board();
+            board.restart();
+        }
+        final Perft perft = new Perft();
+        final long start = System.currentTimeMillis();
+        long nodes = 0;
+        final Map<Integer, Long> counts = perft.divide(board, depth);
+        for (Map.Entry<Integer, Long> entry: counts.entrySet()) {
+            if (divide) {
+                System.out.printf("%s: %d\r\n", StringUtils.toLong(entry.getKey()), entry.getValue());
+            }
+            nodes += entry.getValue();
+        }
+        if (depth == 0) {
+            nodes = 1;
+        }
+        final long time = Math.max(System.currentTimeMillis() - start, 1);
+        System.out.printf("Moves: %d, nodes: %d, time: %d ms, nps: %d\r\n", counts.size(), nodes, time,
+            nodes * 1000 / time);
+        perft.shutdown();
+    }
+}
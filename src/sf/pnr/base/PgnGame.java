@@ -0,0 +1,108 @@
+package sf.pnr.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ */
+public final class PgnGame {
+
+    private final Map<String, String> headers = new HashMap<String, String>();
+    // the SAN moves of the game, back to back, sanEnds[i] is the end offset of the i-th move
+    private char[] sanChars = new char[1024];
+    private int sanLength;
+    private int[] sanEnds = new int[256];
+    private int moveCount;
+    private String result;
+
+    void reset() {
+        headers.clear();
+        sanLength = 0;
+        moveCount = 0;
+        result = null;
+    }
+
+    void addHeader(final String name, final String value) {
+        headers.put(name, value);
+    }
+
+    void appendSanChar(final char ch) {
+        if (sanLength == sanChars.length) {
+            final char[] newChars = new char[sanChars.length << 1];
+            System.arraycopy(sanChars, 0, newChars, 0, sanLength);
+            sanChars = newChars;
+        }
+        sanChars[sanLength++] = ch;
+    }
+
+    void endSan() {
+        if (moveCount == sanEnds.length) {
+            final int[] newEnds = new int[sanEnds.length << 1];
+            System.arraycopy(sanEnds, 0, newEnds, 0, moveCount);
+            sanEnds = newEnds;
+        }
+        sanEnds[moveCount++] = sanLength;
+    }
+
+    void setResult(final String result) {
+        this.result = result;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return the game termination marker of the move text ("1-0", "0-1", "1/2-1/2" or "*"), the "Result" header
+     * if the move text didn't have one
+     */
+    public String getResult() {
+        return result != null? result: headers.get("Result");
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public String getSan(final int index) {
+        final int start = index == 0? 0: sanEnds[index - 1];
+        return new String(sanChars, start, sanEnds[index] - start);
+    }
+
+    /**
+     * Sets up the starting position of the game, from the "FEN" header when there is one.
+     */
+    public void setupBoard(final Board board) {
+        final String fen = headers.get("FEN");
+        if (fen != null) {
+            StringUtils.fromFen(board, fen);
+        } else {
+            board.restart();
+        }
+    }
+
+    /**
+     * Replays the game on the board, leaving the board in the final position.
+     * @return number of moves stored in <code>moves</code>, -1 if one of the moves couldn't be parsed
+     */
+    public int parseMoves(final Board board, final int[] moves) {
+        if (moves.length < moveCount) {
+            throw new IllegalArgumentException(
+                String.format("Move array is too small: %d, game has %d moves", moves.length, moveCount));
+        }
+        setupBoard(board);
+        for (int i = 0; i < moveCount; i++) {
+            try {
+                moves[i] = StringUtils.fromShort(board, getSan(i));
+                board.move(moves[i]);
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+        return moveCount;
+    }
+}
@@ -0,0 +1,301 @@
+package sf.pnr.base;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+public final class PgnReader {
+
+    public static interface GameFilter {
+        /**
+         * Called on the reading thread before the moves are replayed, only the headers and the result should be used.
+         */
+        boolean accept(PgnGame game);
+    }
+
+    public static interface GameProcessor {
+        /**
+         * Called on a worker thread, the board is owned by the worker and reused for all of its games.
+         */
+        void process(PgnGame game, Board board);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GAMES_PER_THREAD = 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final StringBuilder builder = new StringBuilder(64);
+    private int pushedBack = -1;
+
+    public PgnReader(final ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    /**
+     * Reads the next game into <code>game</code>, comments, variations and NAGs are skipped.
+     * @return false if there are no more games
+     */
+    public boolean next(final PgnGame game) throws IOException {
+        game.reset();
+        boolean hasContent = false;
+        boolean inMoves = false;
+        for (int ch = read(); ch >= 0; ch = read()) {
+            if (ch == '[') {
+                if (inMoves) {
+                    // new game started without a termination marker
+                    pushedBack = ch;
+                    return true;
+                }
+                readHeader(game);
+                hasContent = true;
+            } else if (ch == '{') {
+                skipUntil('}');
+            } else if (ch == ';' || ch == '%') {
+                skipUntil('\n');
+            } else if (ch == '(') {
+                skipVariation();
+            } else if (ch == '$') {
+                skipToken();
+            } else if (ch > ' ') {
+                if (readMoveToken(game, ch)) {
+                    return true;
+                }
+                hasContent = true;
+                inMoves = true;
+            }
+        }
+        return hasContent;
+    }
+
+    // the bytes are taken as ISO-8859-1 characters, which is enough for the tags and the move text
+    private void readHeader(final PgnGame game) throws IOException {
+        builder.setLength(0);
+        int ch = read();
+        while (ch >= 0 && ch <= ' ') {
+            ch = read();
+        }
+        while (ch > ' ' && ch != '"' && ch != ']') {
+            builder.append((char) ch);
+            ch = read();
+        }
+        final String name = builder.toString();
+        while (ch >= 0 && ch != '"' && ch != ']') {
+            ch = read();
+        }
+        builder.setLength(0);
+        if (ch == '"') {
+            for (ch = read(); ch >= 0 && ch != '"'; ch = read()) {
+                if (ch == '\\') {
+                    ch = read();
+                }
+                builder.append((char) ch);
+            }
+            skipUntil(']');
+        }
+        game.addHeader(name, builder.toString());
+    }
+
+    /**
+     * @return true if the token was a game termination marker
+     */
+    private boolean readMoveToken(final PgnGame game, int ch) throws IOException {
+        builder.setLength(0);
+        while (ch > ' ' && ch != '{' && ch != '(' && ch != ')' && ch != ';' && ch != '[' && ch != '$') {
+            builder.append((char) ch);
+            ch = read();
+        }
+        if (ch > ' ') {
+            pushedBack = ch;
+        }
+        final String result = getResult(builder);
+        if (result != null) {
+            game.setResult(result);
+            return true;
+        }
+        // skip the move number, a token can be "12.", "12...", or "12.Nf3"
+        int start = 0;
+        while (start < builder.length() && (Character.isDigit(builder.charAt(start)) || builder.charAt(start) == '.')) {
+            start++;
+        }
+        int end = builder.length();
+        while (end > start && (builder.charAt(end - 1) == '!' || builder.charAt(end - 1) == '?')) {
+            end--;
+        }
+        if (end > start) {
+            for (int i = start; i < end; i++) {
+                game.appendSanChar(builder.charAt(i));
+            }
+            game.endSan();
+        }
+        return false;
+    }
+
+    private static String getResult(final CharSequence token) {
+        final int length = token.length();
+        if (length == 1 && token.charAt(0) == '*') {
+            return "*";
+        } else if (length == 3 && token.charAt(1) == '-') {
+            if (token.charAt(0) == '1' && token.charAt(2) == '0') {
+                return "1-0";
+            } else if (token.charAt(0) == '0' && token.charAt(2) == '1') {
+                return "0-1";
+            }
+        } else if (length == 7 && "1/2-1/2".contentEquals(token)) {
+            return "1/2-1/2";
+        }
+        return null;
+    }
+
+    private void skipUntil(final int end) throws IOException {
+        for (int ch = read(); ch >= 0 && ch != end; ch = read()) {
+            // skip
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        for (int ch = read(); ch >= 0 && depth > 0; ch = read()) {
+            if (ch == '(') {
+                depth++;
+            } else if (ch == ')') {
+                depth--;
+            } else if (ch == '{') {
+                skipUntil('}');
+            } else if (ch == ';') {
+                skipUntil('\n');
+            }
+        }
+    }
+
+    private void skipToken() throws IOException {
+        int ch = read();
+        while (ch > ' ' && ch != '{' && ch != '(' && ch != ')' && ch != ';' && ch != '[') {
+            ch = read();
+        }
+        if (ch > ' ') {
+            pushedBack = ch;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack >= 0) {
+            final int ch = pushedBack;
+            pushedBack = -1;
+            return ch;
+        }
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            int count = 0;
+            while (count == 0) {
+                count = channel.read(buffer);
+            }
+            buffer.flip();
+            if (count < 0) {
+                return -1;
+            }
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Streams the games from the channel to <code>threads</code> workers. The game objects are recycled, the
+     * processor must not keep a reference to them after it returned.
+     * @param filter rejects games before their moves are replayed, can be null
+     * @return number of games passed to the processor
+     */
+    public static long process(final ReadableByteChannel channel, final int threads, final GameFilter filter,
+                               final GameProcessor processor) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        final int gameCount = threads * GAMES_PER_THREAD;
+        final BlockingQueue<PgnGame> free = new ArrayBlockingQueue<PgnGame>(gameCount);
+        for (int i = 0; i < gameCount; i++) {
+            free.add(new PgnGame());
+        }
+        // the workers stop when they take this from the queue
+        final PgnGame last = new PgnGame();
+        final BlockingQueue<PgnGame> full = new ArrayBlockingQueue<PgnGame>(gameCount + threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    final Board board = new Board();
+                    for (PgnGame game = full.take(); game != last; game = full.take()) {
+                        processor.process(game, board);
+                        free.put(game);
+                    }
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        final PgnReader reader = new PgnReader(channel);
+        long processed = 0;
+        try {
+            PgnGame game = takeFree(free, futures);
+            while (reader.next(game)) {
+                if (filter == null || filter.accept(game)) {
+                    full.put(game);
+                    processed++;
+                    game = takeFree(free, futures);
+                }
+            }
+            for (int i = 0; i < threads; i++) {
+                full.put(last);
+            }
+            for (Future<Void> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new UndeclaredThrowableException(e, "Interrupted while processing games");
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UndeclaredThrowableException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return processed;
+    }
+
+    private static PgnGame takeFree(final BlockingQueue<PgnGame> free, final List<Future<Void>> futures)
+            throws InterruptedException, ExecutionException {
+        PgnGame game = free.poll(100, TimeUnit.MILLISECONDS);
+        while (game == null) {
+            // a failed worker never returns its game, don't wait for it forever
+            for (Future<Void> future: futures) {
+                if (future.isDone()) {
+                    future.get();
+                }
+            }
+            game = free.poll(100, TimeUnit.MILLISECONDS);
+        }
+        return game;
+    }
+}
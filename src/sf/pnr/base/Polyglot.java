@@ -3,6 +3,13 @@ package sf.pnr.base;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static sf.pnr.base.Utils.*;
@@ -211,89 +218,112 @@ public class Polyglot {
     private static final Random RND = new Random(System.currentTimeMillis());
     private static final int[] PROMOTION_MAP = new int[]
         {EMPTY, MT_PROMOTION_KNIGHT, MT_PROMOTION_BISHOP, MT_PROMOTION_ROOK, MT_PROMOTION_QUEEN};
+    private static final int RECORD_SIZE = 16;
+    // books are mapped once and shared by every reader, only absolute reads are used on the buffers
+    private static final Map<File, ByteBuffer> MAPPED_BOOKS = new HashMap<File, ByteBuffer>();
 
     @Configurable(Configurable.Key.POLYGLOT_BOOK)
     public static File BOOK = null;
 
-    private long recordSize;
+    // further books consulted together with BOOK, separated by commas
+    @Configurable(Configurable.Key.POLYGLOT_BOOKS)
+    public static String BOOKS = "";
 
-    public Polyglot() {
-        recordSize = 16;
+    public int readMove(final Board board) {
+        final Map<Integer, Integer> candidates = readMoves(board);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        long totalWeight = 0;
+        for (int weight: candidates.values()) {
+            totalWeight += weight;
+        }
+        if (totalWeight == 0) {
+            final int index = RND.nextInt(candidates.size());
+            return new ArrayList<Integer>(candidates.keySet()).get(index);
+        }
+        long selected = (long) (RND.nextDouble() * totalWeight);
+        for (Map.Entry<Integer, Integer> entry: candidates.entrySet()) {
+            selected -= entry.getValue();
+            if (selected < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Failed to select a book move");
     }
 
-    public int readMove(final Board board) {
-        try {
-            final RandomAccessFile file = new RandomAccessFile(BOOK, "r");
-            final long zobrist = board.getPolyglotZobristKey();
-            final long bytes = BOOK.length();
-            int low = 0;
-            int high = (int) (bytes / recordSize - 1);
-            while (low <= high) {
-                int mid = (low + high) >>> 1;
-                file.seek(mid * recordSize);
-                long midVal = file.readLong();
-                if (lessThanUnsigned(midVal, zobrist)) {
-                    low = mid + 1;
-                } else if (lessThanUnsigned(zobrist, midVal)) {
-                    high = mid - 1;
-                } else {
-                    short[] moves = new short[2];
-                    short[] weights = new short[2];
-                    moves[0] = file.readShort();
-                    weights[0] = file.readShort();
-                    for (int i = mid - 1; i >= 0; i++) {
-                        file.seek(i * recordSize);
-                        long testZobrist = file.readLong();
-                        if (testZobrist != zobrist) {
-                            break;
-                        }
-                        final short move = file.readShort();
-                        final short weight = file.readShort();
-                        if (weights[0] < weight) {
-                            weights[1] = weights[0];
-                            moves[1] = moves[0];
-                            weights[0] = weight;
-                            moves[0] = move;
-                        } else if (weights[1] < weight) {
-                            weights[1] = weight;
-                            moves[1] = move;
-                        }
-                    }
-                    for (int i = mid + 1; i < BOOK.length(); i++) {
-                        file.seek(i * recordSize);
-                        long testZobrist = file.readLong();
-                        if (testZobrist != zobrist) {
-                            break;
-                        }
-                        final short move = file.readShort();
-                        final short weight = file.readShort();
-                        if (weights[0] < weight) {
-                            weights[1] = weights[0];
-                            moves[1] = moves[0];
-                            weights[0] = weight;
-                            moves[0] = move;
-                        } else if (weights[1] < weight) {
-                            weights[1] = weight;
-                            moves[1] = move;
-                        }
-                    }
-                    int weight = RND.nextInt(weights[0] + weights[1]);
-                    final int move;
-                    if (weight < weights[0]) {
-                         move = moves[0];
-                    } else {
-                        move = moves[1];
+    /**
+     * Collects the moves of every configured book for the position. The weights of moves found in several books are
+     * added up.
+     * @return weights keyed by the move, in book order
+     */
+    public Map<Integer, Integer> readMoves(final Board board) {
+        final Map<Integer, Integer> candidates = new LinkedHashMap<Integer, Integer>();
+        final long zobrist = board.getPolyglotZobristKey();
+        for (File book: getBooks()) {
+            final ByteBuffer buffer = getBuffer(book);
+            if (buffer == null) {
+                continue;
+            }
+            final int count = buffer.capacity() / RECORD_SIZE;
+            for (int i = findFirst(buffer, count, zobrist); i < count; i++) {
+                final int offset = i * RECORD_SIZE;
+                if (buffer.getLong(offset) != zobrist) {
+                    break;
+                }
+                final int move = convertFromPolyglotMove(board, buffer.getShort(offset + 8) & 0xFFFF);
+                final int weight = buffer.getShort(offset + 10) & 0xFFFF;
+                final Integer oldWeight = candidates.get(move);
+                candidates.put(move, oldWeight == null? weight: oldWeight + weight);
+            }
+        }
+        return candidates;
+    }
+
+    private static int findFirst(final ByteBuffer buffer, final int count, final long zobrist) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (lessThanUnsigned(buffer.getLong(mid * RECORD_SIZE), zobrist)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer getBuffer(final File book) {
+        synchronized (MAPPED_BOOKS) {
+            ByteBuffer buffer = MAPPED_BOOKS.get(book);
+            if (buffer != null) {
+                return buffer;
+            }
+            // an unreadable book or one too large to map is treated as an empty one, it isn't cached so it is tried
+            // again when the next move is looked up
+            try {
+                final RandomAccessFile file = new RandomAccessFile(book, "r");
+                try {
+                    final FileChannel channel = file.getChannel();
+                    final long size = channel.size();
+                    if (size > Integer.MAX_VALUE) {
+                        return null;
                     }
-                    return convertFromPolyglotMove(board, move);
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } finally {
+                    // the mapping stays valid after the file is closed
+                    file.close();
                 }
+            } catch (IOException e) {
+                return null;
             }
-            return 0;
-        } catch (IOException e) {
-            return 0;
+            MAPPED_BOOKS.put(book, buffer);
+            return buffer;
         }
     }
 
-    private boolean lessThanUnsigned(final long a, final long b) {
+    private static boolean lessThanUnsigned(final long a, final long b) {
         return (a < b) ^ (a < 0) ^ ( b < 0);
     }
 
@@ -328,7 +358,58 @@ public class Polyglot {
         return move;
     }
 
+    /**
+     * Encodes the move the way Polyglot books store it, i.e. castling as the king capturing its own rook.
+     */
+    public static int toPolyglotMove(final int move) {
+        final int fromPos = getFromPosition(move);
+        final int fromFile = getFile(fromPos);
+        final int fromRank = getRank(fromPos);
+        final int toPos = getToPosition(move);
+        int toFile = getFile(toPos);
+        final int toRank = getRank(toPos);
+        final int moveType = move & MOVE_TYPE;
+        int promotion = 0;
+        if (moveType == MT_CASTLING_KINGSIDE) {
+            toFile = 7;
+        } else if (moveType == MT_CASTLING_QUEENSIDE) {
+            toFile = 0;
+        } else if (moveType >= MT_PROMOTION) {
+            for (int i = 1; i < PROMOTION_MAP.length; i++) {
+                if (PROMOTION_MAP[i] == moveType) {
+                    promotion = i;
+                }
+            }
+        }
+        return toFile | (toRank << 3) | (fromFile << 6) | (fromRank << 9) | (promotion << 12);
+    }
+
     public File getBook() {
         return BOOK;
     }
-}
\ No newline at end of file
+
+    public List<File> getBooks() {
+        final List<File> books = new ArrayList<File>();
+        if (BOOK != null) {
+            books.add(BOOK);
+        }
+        if (BOOKS != null) {
+            for (String name: BOOKS.split(",")) {
+                name = name.trim();
+                if (name.length() > 0) {
+                    books.add(new File(name));
+                }
+            }
+        }
+        return books;
+    }
+
+    public boolean hasBook() {
+        for (File book: getBooks()) {
+            if (book.exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
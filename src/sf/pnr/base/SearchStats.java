@@ -0,0 +1,279 @@
+package sf.pnr.base;
+
+import java.util.Locale;
+
+/**
+ */
+public final class SearchStats {
+
+    /**
+     * The counters are only updated when the engine is started with <code>-Dpnr.searchStats=true</code>. The JIT
+     * treats the flag as a constant, so the counting code costs nothing when it is off.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("pnr.searchStats");
+
+    public static final int NODE_ROOT = 0;
+    public static final int NODE_PV = 1;
+    public static final int NODE_NON_PV = 2;
+    public static final int NODE_QUIESCENCE = 3;
+    private static final String[] NODE_TYPE_NAMES = new String[] {"root", "pv", "nonPv", "quiescence"};
+
+    private long nodes;
+    private long quiescenceNodes;
+    private final long[] ttProbes = new long[NODE_TYPE_NAMES.length];
+    private final long[] ttHits = new long[NODE_TYPE_NAMES.length];
+    private final long[] ttCuts = new long[NODE_TYPE_NAMES.length];
+    private long nullMoveTries;
+    private long nullMoveCuts;
+    private long razoringTries;
+    private long razoringCuts;
+    private long futilityNodes;
+    private long futilityPrunedMoves;
+    private long lmrSearches;
+    private long lmrResearches;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    private long evalHashProbes;
+    private long evalHashHits;
+
+    /**
+     * A hit counts as a cut until {@link #ttNoCut} says that the search went on, so the search doesn't have to count
+     * every return statement of the transposition table lookup.
+     */
+    void ttProbe(final int nodeType, final long ttValue) {
+        ttProbes[nodeType]++;
+        if (ttValue != 0) {
+            ttHits[nodeType]++;
+            ttCuts[nodeType]++;
+        }
+    }
+
+    void ttNoCut(final int nodeType, final long ttValue) {
+        if (ttValue != 0) {
+            ttCuts[nodeType]--;
+        }
+    }
+
+    void nullMove(final boolean cut) {
+        nullMoveTries++;
+        if (cut) {
+            nullMoveCuts++;
+        }
+    }
+
+    void razoring(final boolean cut) {
+        razoringTries++;
+        if (cut) {
+            razoringCuts++;
+        }
+    }
+
+    void futilityNode() {
+        futilityNodes++;
+    }
+
+    void futilityPrune(final int moveCount) {
+        futilityPrunedMoves += moveCount;
+    }
+
+    void lateMoveReduction(final boolean research) {
+        lmrSearches++;
+        if (research) {
+            lmrResearches++;
+        }
+    }
+
+    void betaCutoff(final int legalMoveCount) {
+        betaCutoffs++;
+        if (legalMoveCount == 1) {
+            firstMoveCutoffs++;
+        }
+    }
+
+    void quiescenceNode() {
+        quiescenceNodes++;
+    }
+
+    void setNodes(final long nodes) {
+        this.nodes = nodes;
+    }
+
+    void setEvalHashCounts(final long probes, final long hits) {
+        evalHashProbes = probes;
+        evalHashHits = hits;
+    }
+
+    public void reset() {
+        nodes = 0;
+        quiescenceNodes = 0;
+        for (int i = 0; i < NODE_TYPE_NAMES.length; i++) {
+            ttProbes[i] = 0;
+            ttHits[i] = 0;
+            ttCuts[i] = 0;
+        }
+        nullMoveTries = 0;
+        nullMoveCuts = 0;
+        razoringTries = 0;
+        razoringCuts = 0;
+        futilityNodes = 0;
+        futilityPrunedMoves = 0;
+        lmrSearches = 0;
+        lmrResearches = 0;
+        betaCutoffs = 0;
+        firstMoveCutoffs = 0;
+        evalHashProbes = 0;
+        evalHashHits = 0;
+    }
+
+    public void add(final SearchStats other) {
+        nodes += other.nodes;
+        quiescenceNodes += other.quiescenceNodes;
+        for (int i = 0; i < NODE_TYPE_NAMES.length; i++) {
+            ttProbes[i] += other.ttProbes[i];
+            ttHits[i] += other.ttHits[i];
+            ttCuts[i] += other.ttCuts[i];
+        }
+        nullMoveTries += other.nullMoveTries;
+        nullMoveCuts += other.nullMoveCuts;
+        razoringTries += other.razoringTries;
+        razoringCuts += other.razoringCuts;
+        futilityNodes += other.futilityNodes;
+        futilityPrunedMoves += other.futilityPrunedMoves;
+        lmrSearches += other.lmrSearches;
+        lmrResearches += other.lmrResearches;
+        betaCutoffs += other.betaCutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+        evalHashProbes += other.evalHashProbes;
+        evalHashHits += other.evalHashHits;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public long getTtProbes(final int nodeType) {
+        return ttProbes[nodeType];
+    }
+
+    public long getTtHits(final int nodeType) {
+        return ttHits[nodeType];
+    }
+
+    public long getTtCuts(final int nodeType) {
+        return ttCuts[nodeType];
+    }
+
+    public long getNullMoveTries() {
+        return nullMoveTries;
+    }
+
+    public long getNullMoveCuts() {
+        return nullMoveCuts;
+    }
+
+    public long getRazoringTries() {
+        return razoringTries;
+    }
+
+    public long getRazoringCuts() {
+        return razoringCuts;
+    }
+
+    public long getFutilityNodes() {
+        return futilityNodes;
+    }
+
+    public long getFutilityPrunedMoves() {
+        return futilityPrunedMoves;
+    }
+
+    public long getLmrSearches() {
+        return lmrSearches;
+    }
+
+    public long getLmrResearches() {
+        return lmrResearches;
+    }
+
+    public long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getEvalHashProbes() {
+        return evalHashProbes;
+    }
+
+    public long getEvalHashHits() {
+        return evalHashHits;
+    }
+
+    /**
+     * @return the most important rates on one line, to be sent as an "info string"
+     */
+    public String toInfoString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "nodes %d qsearch %.1f%%", nodes, percent(quiescenceNodes, nodes)));
+        for (int i = 0; i < NODE_TYPE_NAMES.length; i++) {
+            builder.append(String.format(Locale.US, " tt.%s hit %.1f%% cut %.1f%%", NODE_TYPE_NAMES[i],
+                percent(ttHits[i], ttProbes[i]), percent(ttCuts[i], ttProbes[i])));
+        }
+        builder.append(String.format(Locale.US,
+            " nullMove %.1f%% razoring %.1f%% futility %d nodes %d moves lmrResearch %.1f%% firstMoveCut %.1f%%" +
+                " evalHash %.1f%%",
+            percent(nullMoveCuts, nullMoveTries), percent(razoringCuts, razoringTries), futilityNodes,
+            futilityPrunedMoves, percent(lmrResearches, lmrSearches), percent(firstMoveCutoffs, betaCutoffs),
+            percent(evalHashHits, evalHashProbes)));
+        return builder.toString();
+    }
+
+    public String toJson() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\"nodes\": ").append(nodes);
+        builder.append(", \"quiescenceNodes\": ").append(quiescenceNodes);
+        builder.append(", \"tt\": {");
+        for (int i = 0; i < NODE_TYPE_NAMES.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append('"').append(NODE_TYPE_NAMES[i]).append("\": ");
+            appendCounts(builder, "probes", ttProbes[i], "hits", ttHits[i], "cuts", ttCuts[i]);
+        }
+        builder.append("}, \"nullMove\": ");
+        appendCounts(builder, "tries", nullMoveTries, "cuts", nullMoveCuts);
+        builder.append(", \"razoring\": ");
+        appendCounts(builder, "tries", razoringTries, "cuts", razoringCuts);
+        builder.append(", \"futility\": ");
+        appendCounts(builder, "nodes", futilityNodes, "prunedMoves", futilityPrunedMoves);
+        builder.append(", \"lmr\": ");
+        appendCounts(builder, "searches", lmrSearches, "researches", lmrResearches);
+        builder.append(", \"betaCutoffs\": ");
+        appendCounts(builder, "total", betaCutoffs, "firstMove", firstMoveCutoffs);
+        builder.append(", \"evalHash\": ");
+        appendCounts(builder, "probes", evalHashProbes, "hits", evalHashHits);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private static void appendCounts(final StringBuilder builder, final Object... namesAndCounts) {
+        builder.append('{');
+        for (int i = 0; i < namesAndCounts.length; i += 2) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append('"').append(namesAndCounts[i]).append("\": ").append(namesAndCounts[i + 1]);
+        }
+        builder.append('}');
+    }
+
+    private static double percent(final long count, final long total) {
+        return total == 0? 0.0: count * 100.0 / total;
+    }
+}
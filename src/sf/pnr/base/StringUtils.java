@@ -88,7 +88,10 @@ public class StringUtils {
     }
 
     public static Board fromFen(final String fen) {
-        final Board board = new Board();
+        return fromFen(new Board(), fen);
+    }
+
+    public static Board fromFen(final Board board, final String fen) {
         board.clear();
         final int[] squares = board.getBoard();
 
@@ -0,0 +1,93 @@
+package sf.pnr.base;
+
+/**
+ */
+public final class TimeManager {
+
+    @Configurable(Configurable.Key.ENGINE_ITERATIVE_DEEPENING_TIME_LIMIT)
+    private static double ITERATIVE_DEEPENING_TIME_LIMIT = 0.9;
+    @Configurable(Configurable.Key.ENGINE_TIME_BEST_MOVE_CHANGE_FACTOR)
+    private static double BEST_MOVE_CHANGE_FACTOR = 0.5;
+    @Configurable(Configurable.Key.ENGINE_TIME_SCORE_DROP_MARGIN)
+    private static int SCORE_DROP_MARGIN = 20;
+    @Configurable(Configurable.Key.ENGINE_TIME_SCORE_DROP_FACTOR)
+    private static double SCORE_DROP_FACTOR = 0.01;
+    @Configurable(Configurable.Key.ENGINE_TIME_STABLE_DEPTH)
+    private static int STABLE_DEPTH = 4;
+    @Configurable(Configurable.Key.ENGINE_TIME_STABLE_FACTOR)
+    private static double STABLE_FACTOR = 0.6;
+
+    private static final int SCORE_DROP_MAX = 150;
+
+    private long startTime;
+    private long optimumTime;
+    private long maximumTime;
+    private int lastBestMove;
+    private int lastValue;
+    private int stableDepthCount;
+    private double instability;
+
+    /**
+     * @param optimumTime the time the move should take normally, 0 if there is no time limit
+     * @param maximumTime hard limit, the search is cancelled after this
+     */
+    public synchronized void start(final long optimumTime, final long maximumTime) {
+        startTime = System.currentTimeMillis();
+        this.optimumTime = optimumTime;
+        this.maximumTime = Math.max(optimumTime, maximumTime);
+        lastBestMove = 0;
+        lastValue = 0;
+        stableDepthCount = 0;
+        instability = 0;
+    }
+
+    /**
+     * Changes the limits of the running search, the history of the iterations is kept.
+     */
+    public synchronized void restart(final long optimumTime, final long maximumTime) {
+        startTime = System.currentTimeMillis();
+        this.optimumTime = optimumTime;
+        this.maximumTime = Math.max(optimumTime, maximumTime);
+    }
+
+    /**
+     * Called after each completed iteration of the main search thread.
+     * @return false if the next iteration shouldn't be started
+     */
+    public synchronized boolean iterationFinished(final int depth, final int bestMove, final int value) {
+        return iterationFinished(depth, bestMove, value, System.currentTimeMillis() - startTime);
+    }
+
+    synchronized boolean iterationFinished(final int depth, final int bestMove, final int value, final long elapsed) {
+        if (lastBestMove != 0 && (lastBestMove & Utils.BASE_INFO) != (bestMove & Utils.BASE_INFO)) {
+            stableDepthCount = 0;
+            instability += BEST_MOVE_CHANGE_FACTOR;
+        } else if (lastBestMove != 0) {
+            stableDepthCount++;
+        }
+        double scale = 1.0 + instability;
+        final int drop = lastBestMove != 0? lastValue - value: 0;
+        if (drop > SCORE_DROP_MARGIN) {
+            scale *= 1.0 + Math.min(drop, SCORE_DROP_MAX) * SCORE_DROP_FACTOR;
+        }
+        if (stableDepthCount >= STABLE_DEPTH) {
+            scale *= STABLE_FACTOR;
+        }
+        // old changes of the best move count less and less
+        instability /= 2;
+        lastBestMove = bestMove;
+        lastValue = value;
+        return elapsed < getTargetTime(scale) * ITERATIVE_DEEPENING_TIME_LIMIT;
+    }
+
+    private long getTargetTime(final double scale) {
+        if (optimumTime == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (optimumTime >= maximumTime) {
+            // fixed time per move, use all of it
+            return maximumTime;
+        }
+        return Math.min((long) (optimumTime * scale), maximumTime);
+    }
+}
@@ -358,6 +358,10 @@ public class Utils {
         return ((pos0x88 & RANK) >> 1) | (pos0x88 & FILE);
     }
 
+    public static int convert64To0x88(final int pos64) {
+        return ((pos64 & 0x38) << 1) | (pos64 & FILE);
+    }
+
     public static int side(final int piece) {
         return 1 ^ (piece >>> 31);
     }
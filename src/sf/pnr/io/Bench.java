@@ -0,0 +1,96 @@
+package sf.pnr.io;
+
+import sf.pnr.base.Board;
+import sf.pnr.base.Configurable;
+import sf.pnr.base.Configuration;
+import sf.pnr.base.Engine;
+import sf.pnr.base.SearchStats;
+import sf.pnr.base.StringUtils;
+
+import java.io.PrintStream;
+
+/**
+ */
+public final class Bench {
+
+    public static final int DEFAULT_DEPTH = 8;
+
+    // don't change the positions, the total node count is only comparable over the same set
+    private static final String[] POSITIONS = new String[] {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 10",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 11",
+        "4rrk1/pp1n3p/3q2pQ/2p1pb2/2PP4/2P3N1/P2B2PP/4RRK1 b - - 7 19",
+        "rq3rk1/ppp2ppp/1bnpb3/3N2B1/3NP3/7P/PPPQ1PP1/2KR3R w - - 7 14",
+        "r1bq1r1k/1pp1n1pp/1p1p4/4p2Q/4Pp2/1BNP4/PPP2PPP/3R1RK1 w - - 2 14",
+        "r3r1k1/2p2ppp/p1p1bn2/8/1q2P3/2NPQN2/PPP3PP/R4RK1 b - - 2 15",
+        "r1bbk1nr/pp3p1p/2n5/1N4p1/2Np1B2/8/PPP2PPP/2KR1B1R w kq - 0 13",
+        "r1bq1rk1/ppp1nppp/4n3/3p3Q/3P4/1BP1B3/PP1N2PP/R4RK1 w - - 1 16",
+        "4r1k1/r1q2ppp/ppp2n2/4P3/5Rb1/1N1BQ3/PPP3PP/R5K1 w - - 1 17",
+        "2rqkb1r/ppp2p2/2npb1p1/1N1Nn2p/2P1PP2/8/PP2B1PP/R1BQK2R b KQ - 0 11",
+        "r1bq1r1k/b1p1npp1/p2p3p/1p6/3PP3/1B2NN2/PP3PPP/R2Q1RK1 w - - 1 16",
+        "3r1rk1/p5pp/bpp1pp2/8/q1PP1P2/b3P3/P2NQRPP/1R2B1K1 b - - 6 22",
+        "6k1/6p1/6Pp/ppp5/3pn2P/1P3K2/1PP2P2/3N4 b - - 0 1",
+        "3b4/5kp1/1p1p1p1p/pP1PpP1P/P1P1P3/3KN3/8/8 w - - 0 1",
+        "8/8/8/8/5kp1/P7/8/1K1N4 w - - 0 1"
+    };
+
+    private Bench() {
+    }
+
+    /**
+     * Searches every bench position to the given depth, starting each search with cleared tables, and prints the
+     * total node count (which only changes when the search or the evaluation changes) and the speed. The searches
+     * run on a single thread with a single PV whatever the engine is configured with.
+     * @return total number of nodes searched
+     */
+    public static long run(final int depth, final PrintStream out) {
+        final Configuration configuration = Configuration.getInstance();
+        final String threads = configuration.getString(Configurable.Key.ENGINE_THREADS);
+        final String multiPv = configuration.getString(Configurable.Key.ENGINE_MULTI_PV);
+        configuration.setProperty(Configurable.Key.ENGINE_THREADS, "1");
+        configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, "1");
+        try {
+            return run(new Engine(), depth, out);
+        } finally {
+            configuration.setProperty(Configurable.Key.ENGINE_THREADS, threads);
+            configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, multiPv);
+        }
+    }
+
+    private static long run(final Engine engine, final int depth, final PrintStream out) {
+        final SearchStats stats = new SearchStats();
+        long totalNodes = 0;
+        long totalTime = 0;
+        for (int i = 0; i < POSITIONS.length; i++) {
+            final Board board = StringUtils.fromFen(POSITIONS[i]);
+            engine.clear();
+            final long startTime = System.currentTimeMillis();
+            final long result = engine.search(board, depth, 0);
+            final long time = System.currentTimeMillis() - startTime;
+            final long nodes = engine.getTotalNodeCount();
+            totalNodes += nodes;
+            totalTime += time;
+            if (SearchStats.ENABLED) {
+                stats.add(engine.getSearchStats());
+            }
+            out.printf("Position %2d/%d: %s, best move: %s, nodes: %d, time: %d ms\r\n", i + 1, POSITIONS.length,
+                POSITIONS[i], StringUtils.toLong(Engine.getMoveFromSearchResult(result)), nodes, time);
+        }
+        out.println("===========================");
+        out.printf("Depth          : %d\r\n", depth);
+        out.printf("Total time (ms): %d\r\n", totalTime);
+        out.printf("Nodes searched : %d\r\n", totalNodes);
+        out.printf("Nodes/second   : %d\r\n", totalNodes * 1000 / Math.max(totalTime, 1));
+        if (SearchStats.ENABLED) {
+            out.println("Search stats   : " + stats.toInfoString());
+            out.println(stats.toJson());
+        }
+        return totalNodes;
+    }
+
+    public static void main(final String[] args) {
+        final int depth = args.length > 0? Integer.parseInt(args[0]): DEFAULT_DEPTH;
+        run(depth, System.out);
+    }
+}
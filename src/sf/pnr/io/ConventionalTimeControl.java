@@ -4,6 +4,9 @@ package sf.pnr.io;
  */
 public class ConventionalTimeControl implements TimeControl{
 
+    // the search can take this many times the normal move time when the best move keeps changing
+    private static final int MAX_TIME_FACTOR = 4;
+
     private final int sessionMoveCount;
     private final int sessionTime;
     private int timeLeft;
@@ -32,6 +35,16 @@ public class ConventionalTimeControl implements TimeControl{
 
     @Override
     public int getNextMoveTime() {
-        return timeLeft / (sessionMoveCount - moveCount);
+        return Math.min(timeLeft / (sessionMoveCount - moveCount), getMaxMoveTime());
+    }
+
+    @Override
+    public int getMaxMoveTime() {
+        final int movesLeft = sessionMoveCount - moveCount;
+        if (movesLeft == 1) {
+            // last move of the session, keep a small reserve for the overhead
+            return timeLeft - timeLeft / 8;
+        }
+        return Math.min(timeLeft / movesLeft * MAX_TIME_FACTOR, timeLeft / 2);
     }
-}
\ No newline at end of file
+}
@@ -19,4 +19,9 @@ public class FixedPerMoveTimeControl implements TimeControl {
     public int getNextMoveTime() {
         return timePerMove;
     }
+
+    @Override
+    public int getMaxMoveTime() {
+        return timePerMove;
+    }
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ package sf.pnr.io;
  */
 public class IncrementalTimeControl implements TimeControl{
 
+    // the search can take this many times the normal move time when the best move keeps changing
+    private static final int MAX_TIME_FACTOR = 4;
+
     private final int baseTime;
     private final int increment;
     private final int movesLeft;
@@ -22,14 +25,18 @@ public class IncrementalTimeControl implements TimeControl{
 
     @Override
     public void moved(final int ms) {
-        timeLeft -= ms;
+        timeLeft += increment - ms;
     }
 
     @Override
     public int getNextMoveTime() {
         // assume we have 40 moves left for the base time
-        final int baseTimePart = timeLeft / movesLeft;
-        timeLeft += increment;
-        return baseTimePart + increment;
+        return Math.min(timeLeft / movesLeft + increment, getMaxMoveTime());
+    }
+
+    @Override
+    public int getMaxMoveTime() {
+        // the increment only arrives after the move, never bet more than half of the clock on one move
+        return Math.min((timeLeft / movesLeft + increment) * MAX_TIME_FACTOR, timeLeft / 2);
     }
-}
\ No newline at end of file
+}
@@ -5,10 +5,12 @@ import sf.pnr.base.Board;
 import sf.pnr.base.Engine;
 import sf.pnr.base.Evaluation;
 import sf.pnr.base.Polyglot;
+import sf.pnr.base.SearchStats;
 import sf.pnr.base.StringUtils;
 import sf.pnr.base.Utils;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  */
@@ -19,12 +21,17 @@ public class PawnsNRoses {
     private Engine engine;
     private int depth;
     private int time;
+    private int maxTime;
+    private long nodes;
+    private int mate;
+    private int[] searchMoves;
+    private int ponderMove;
     private BestMoveListener listener;
     private boolean random;
 
     public PawnsNRoses() {
         polyglot = new Polyglot();
-        useBook = Polyglot.BOOK != null && Polyglot.BOOK.exists();
+        useBook = polyglot.hasBook();
         board = new Board();
         board.restart();
         depth = 0;
@@ -34,8 +41,7 @@ public class PawnsNRoses {
     public void restart() {
         board = new Board();
         board.restart();
-        final File book = polyglot.getBook();
-        useBook = book != null && book.exists();
+        useBook = polyglot.hasBook();
         if (engine != null) {
             engine.clear();
         }
@@ -78,23 +84,72 @@ public class PawnsNRoses {
 
     public void setTime(final int time) {
         this.time = time;
+        this.maxTime = time;
+    }
+
+    /**
+     * @param time the time the move should take normally
+     * @param maxTime the most time the move can take when the search is unstable
+     */
+    public void setTime(final int time, final int maxTime) {
+        this.time = time;
+        this.maxTime = maxTime;
+    }
+
+    public void setNodes(final long nodes) {
+        this.nodes = nodes;
+    }
+
+    public void setMate(final int mate) {
+        this.mate = mate;
+    }
+
+    /**
+     * @param searchMoves the root moves to search, null to search all of them
+     */
+    public void setSearchMoves(final int[] searchMoves) {
+        this.searchMoves = searchMoves;
     }
 
     public int move() {
         int move = 0;
-        if (useBook) {
+        ponderMove = 0;
+        if (useBook && searchMoves == null && mate == 0) {
             move = polyglot.readMove(board);
             useBook = move != 0;
         }
         if (move == 0) {
             ensureEngineIsAvailable();
-            final long result = engine.search(board, depth, time);
+            final long result = engine.search(board, depth, time, maxTime, nodes, mate, searchMoves);
             move = Engine.getMoveFromSearchResult(result);
+            if (move != 0) {
+                final int[] bestLine = engine.getBestLine(board, move);
+                if (bestLine.length > 1) {
+                    ponderMove = bestLine[1];
+                }
+            }
         }
         moveNow(move);
         return move;
     }
 
+    /**
+     * @return the expected reply to the last move returned by {@link #move()}, 0 if there isn't one
+     */
+    public int getPonderMove() {
+        return ponderMove;
+    }
+
+    /**
+     * The opponent played the expected move, the running ponder search continues with the given time limits.
+     */
+    public void ponderHit(final int time, final int maxTime) {
+        setTime(time, maxTime);
+        if (engine != null) {
+            engine.setSearchTimeLeft(time, maxTime);
+        }
+    }
+
     public void moveNow() {
         if (engine != null) {
             final int[] bestLine = engine.getBestLine(board);
@@ -141,6 +196,36 @@ public class PawnsNRoses {
         return stats.toString();
     }
 
+    @Executable()
+    public String lazyEvalStats() {
+        if (!SearchStats.ENABLED) {
+            return "Lazy evaluation statistics are only collected with -Dpnr.searchStats=true";
+        }
+        final StringBuilder stats = new StringBuilder();
+        if (engine != null) {
+            final Evaluation evaluation = engine.getEvaluation();
+            stats.append("Lazy evaluation early exits: ").append(evaluation.getLazyEvalCutCount());
+            stats.append(" of ").append(evaluation.getLazyEvalCheckCount()).append(" checks");
+        }
+        return stats.toString();
+    }
+
+    /**
+     * @return the counters of the last search, null if there was no search yet
+     */
+    public SearchStats getSearchStats() {
+        return engine != null? engine.getSearchStats(): null;
+    }
+
+    @Executable()
+    public String searchStats() {
+        final SearchStats stats = getSearchStats();
+        if (!SearchStats.ENABLED || stats == null) {
+            return "Search statistics are only collected with -Dpnr.searchStats=true";
+        }
+        return stats.toJson();
+    }
+
     @Executable()
     public String getFen() {
         final String fen;
@@ -163,6 +248,18 @@ public class PawnsNRoses {
         }
     }
 
+    @Executable(values = {String.class})
+    public void saveTranspositionTable(final String path) throws IOException {
+        ensureEngineIsAvailable();
+        engine.getTranspositionTable().save(new File(path));
+    }
+
+    @Executable(values = {String.class})
+    public void loadTranspositionTable(final String path) throws IOException {
+        ensureEngineIsAvailable();
+        engine.getTranspositionTable().load(new File(path));
+    }
+
     @Executable()
     public String evaluate() {
         ensureEngineIsAvailable();
@@ -5,5 +5,13 @@ package sf.pnr.io;
 public interface TimeControl {
     void moved(int ms);
 
+    /**
+     * @return the time the next move should take normally
+     */
     int getNextMoveTime();
+
+    /**
+     * @return the most time the next move can take when the search is unstable
+     */
+    int getMaxMoveTime();
 }
@@ -4,6 +4,7 @@ import sf.pnr.base.BestMoveListener;
 import sf.pnr.base.Board;
 import sf.pnr.base.Configurable;
 import sf.pnr.base.Configuration;
+import sf.pnr.base.SearchStats;
 import sf.pnr.base.StringUtils;
 import sf.pnr.base.Utils;
 
@@ -17,8 +18,11 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -45,6 +49,10 @@ public class UCI implements UciProcess {
     private UciBestMoveListener uciListener;
     private final PawnsNRoses chess;
     private Future<String> future;
+    // released on ponderhit or stop, the result of a ponder search can't be sent before that
+    private CountDownLatch ponderLatch;
+    private volatile int ponderHitTime;
+    private volatile int ponderHitMaxTime;
     private volatile State state = State.START;
 
     public UCI(final InputStream in, final OutputStream out) {
@@ -64,6 +72,11 @@ public class UCI implements UciProcess {
         }
         config.loadFromSystemProperties();
 
+        if (args.length > 0 && "bench".equals(args[0])) {
+            Bench.run(args.length > 1? Integer.parseInt(args[1]): Bench.DEFAULT_DEPTH, System.out);
+            return;
+        }
+
         final OutputStream os;
         if (args.length > 0) {
             os = new TeeOutputStream(System.out, new FileOutputStream(args[0], true));
@@ -96,6 +109,7 @@ public class UCI implements UciProcess {
                     final String value = config.getString(key);
                     out.printf("option name %s type %s default %s\r\n", name, type, value);
                 }
+                out.println("option name Ponder type check default false");
             } else if (line.startsWith("debug ")) {
                 uciListener.setDebug("on".equals(line.substring(6).trim()));
             } else if ("isready".equals(line)) {
@@ -133,6 +147,8 @@ public class UCI implements UciProcess {
                 }
                 if ("Command".equals(name)) {
                     executeCommand(value);
+                } else if ("Ponder".equals(name)) {
+                    // the GUI decides when to ponder, nothing to configure
                 } else {
                     final String keyStr = fromUciOption(name);
                     final Configurable.Key key = Configuration.getKey(keyStr);
@@ -185,9 +201,17 @@ public class UCI implements UciProcess {
             } else if ("stop".equals(line)) {
                 ensureReady();
             } else if ("ponderhit".equals(line)) {
-                if (state == State.SEARCHING_PONDER) {
+                if (state == State.SEARCHING_PONDER && ponderLatch != null) {
                     state = State.SEARCHING;
+                    if (ponderHitTime > 0) {
+                        chess.ponderHit(ponderHitTime, ponderHitMaxTime);
+                    }
+                    ponderLatch.countDown();
                 }
+            } else if ("bench".equals(line) || line.startsWith("bench ")) {
+                ensureReady();
+                final String depthStr = line.substring(5).trim();
+                Bench.run(depthStr.length() > 0? Integer.parseInt(depthStr): Bench.DEFAULT_DEPTH, out);
             } else if ("quit".equals(line)) {
                 break;
             }
@@ -205,13 +229,24 @@ public class UCI implements UciProcess {
         int movesToGo = -1;
         int depth = 0;
         int time = -1;
+        long nodes = 0;
+        int mate = 0;
+        int[] searchMoves = null;
+        boolean ponder = false;
         for (int i = 0; i < params.length; i++) {
             final String param = params[i];
             if (param.equals("searchmoves")) {
-                // not supported yet
+                final List<Integer> moves = new ArrayList<Integer>();
+                while (i + 1 < params.length && params[i + 1].matches("[a-h][1-8][a-h][1-8][nbrq]?")) {
+                    moves.add(StringUtils.fromLong(chess.getBoard(), params[i + 1]));
+                    i++;
+                }
+                searchMoves = new int[moves.size()];
+                for (int j = 0; j < searchMoves.length; j++) {
+                    searchMoves[j] = moves.get(j);
+                }
             } else if (param.equals("ponder")) {
-                state = State.SEARCHING_PONDER;
-                // ponder move not supported
+                ponder = true;
             } else if (param.equals("wtime")) {
                 timeWhite = Integer.parseInt(params[i + 1]);
                 i++;
@@ -231,9 +266,11 @@ public class UCI implements UciProcess {
                 depth = Integer.parseInt(params[i + 1]);
                 i++;
             } else if (param.equals("nodes")) {
-                // not supported
+                nodes = Long.parseLong(params[i + 1]);
+                i++;
             } else if (param.equals("mate")) {
-                // not supported
+                mate = Integer.parseInt(params[i + 1]);
+                i++;
             } else if (param.equals("movetime")) {
                 time = Integer.parseInt(params[i + 1]);
                 i++;
@@ -243,33 +280,64 @@ public class UCI implements UciProcess {
         }
         ensureReady();
         int searchTime = 0;
+        int maxSearchTime = 0;
         boolean whiteToMove = chess.isWhiteToMove();
         if (time >= 0) {
             searchTime = time;
+            maxSearchTime = time;
         } else if (whiteToMove && timeWhite >= 0) {
             final TimeControl timeControl = getTimeControl(timeWhite, incrementWhite, movesToGo);
             searchTime = timeControl.getNextMoveTime();
+            maxSearchTime = timeControl.getMaxMoveTime();
         } else if (!whiteToMove && timeBlack >= 0) {
             final TimeControl timeControl = getTimeControl(timeBlack, incrementBlack, movesToGo);
             searchTime = timeControl.getNextMoveTime();
+            maxSearchTime = timeControl.getMaxMoveTime();
         }
         chess.setDepth(depth);
-        if (searchTime != 0) {
-            chess.setTime(Math.max(searchTime - CANCEL_THRESHOLD, 10));
+        chess.setNodes(nodes);
+        chess.setMate(mate);
+        chess.setSearchMoves(searchMoves);
+        final int moveTime = searchTime != 0? Math.max(searchTime - CANCEL_THRESHOLD, 10): 0;
+        final int maxMoveTime = searchTime != 0? Math.max(maxSearchTime - CANCEL_THRESHOLD, moveTime): 0;
+        final CountDownLatch latch;
+        if (ponder) {
+            // search the position after the expected reply until ponderhit turns it into a timed search
+            state = State.SEARCHING_PONDER;
+            ponderHitTime = moveTime;
+            ponderHitMaxTime = maxMoveTime;
+            latch = new CountDownLatch(1);
+            chess.setTime(Integer.MAX_VALUE);
+        } else {
+            latch = null;
+            if (moveTime != 0) {
+                chess.setTime(moveTime, maxMoveTime);
+            } else if (depth == 0 && nodes == 0 && mate == 0) {
+                chess.setTime(Integer.MAX_VALUE);
+            } else {
+                chess.setTime(0);
+            }
         }
+        ponderLatch = latch;
         future = threadPool.submit(new Callable<String>() {
             @Override
             public String call() throws Exception {
                 try {
-                    if (state == State.SEARCHING_PONDER) {
-                        out.println("bestmove ponder");
-                        return "ponder";
+                    final int move = chess.move();
+                    if (SearchStats.ENABLED && chess.getSearchStats() != null) {
+                        out.println("info string " + chess.getSearchStats().toInfoString());
+                    }
+                    if (latch != null) {
+                        latch.await();
+                    }
+                    final String moveStr = StringUtils.toLong(move);
+                    final int ponderMove = chess.getPonderMove();
+                    if (ponderMove != 0) {
+                        out.println("bestmove " + moveStr + " ponder " + StringUtils.toLong(ponderMove));
                     } else {
-                        final int move = chess.move();
-                        final String moveStr = StringUtils.toLong(move);
                         out.println("bestmove " + moveStr);
-                        return moveStr;
                     }
+                    return moveStr;
                 } catch (Exception e) {
                     printStackTrace(e);
                     throw e;
@@ -374,6 +442,10 @@ public class UCI implements UciProcess {
             if (verbose) {
                 out.print("info string cancelling game");
             }
+            if (ponderLatch != null) {
+                ponderLatch.countDown();
+                ponderLatch = null;
+            }
             chess.cancel();
             future.get();
             future = null;
@@ -468,10 +540,11 @@ public class UCI implements UciProcess {
 
         @Override
         public void bestMoveChanged(final int depth, final int bestMove, final int value, final long time,
-                                    final int[] bestLine, final long nodes) {
+                                    final int[] bestLine, final long nodes, final int pvIndex) {
             if (debug) {
-                final String message = String.format("info depth %d currmove %s score cp %d time %d nps %d pv %s nodes %d",
-                    depth, StringUtils.toLong(bestMove), value, time, time > 0? nodes * 1000 / time: 0,
+                final String message = String.format(
+                    "info depth %d multipv %d currmove %s score cp %d time %d nps %d pv %s nodes %d",
+                    depth, pvIndex, StringUtils.toLong(bestMove), value, time, time > 0? nodes * 1000 / time: 0,
                     StringUtils.toLong(bestLine, " "), nodes);
                 out.println(message);
             }
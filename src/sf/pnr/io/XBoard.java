@@ -38,7 +38,11 @@ public class XBoard {
         chess.setBestMoveListener(new BestMoveListener() {
             @Override
             public void bestMoveChanged(final int depth, final int bestMove, final int value, final long time,
-                                        final int[] bestLine, final long nodes) {
+                                        final int[] bestLine, final long nodes, final int pvIndex) {
+                if (pvIndex > 1) {
+                    // the protocol has no way to show more than one line
+                    return;
+                }
                 final String message = String.format("%d\t%s\t%.2f\t%.1f\t%s", depth, StringUtils.toLong(bestMove),
                     ((double) value) / 100, ((double) time) / 1000, StringUtils.toLong(bestLine, " "));
                 out.println(message);
@@ -118,7 +122,7 @@ public class XBoard {
     private void move(final boolean analyzeMode) throws InterruptedException, ExecutionException {
         ensureReady();
         final int nextMoveTime = timeControl.getNextMoveTime();
-        chess.setTime(nextMoveTime - CANCEL_THRESHOLD);
+        chess.setTime(nextMoveTime - CANCEL_THRESHOLD, timeControl.getMaxMoveTime() - CANCEL_THRESHOLD);
         future = THREAD_POOL.submit(new Callable<String>() {
             @Override
             public String call() throws Exception {
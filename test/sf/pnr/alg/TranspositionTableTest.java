@@ -0,0 +1,162 @@
+package sf.pnr.alg;
+
+import junit.framework.TestCase;
+import sf.pnr.base.Configurable;
+import sf.pnr.base.Configuration;
+import sf.pnr.base.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static sf.pnr.alg.TranspositionTable.*;
+
+public class TranspositionTableTest extends TestCase {
+
+    public void testSetAndRead() {
+        final TranspositionTable table = new TranspositionTable();
+        final int move = StringUtils.fromSimple("e2e4");
+        table.set(0x1234567812345678L, TT_TYPE_EXACT, move, 5, 1000);
+        final long ttValue = table.read(0x1234567812345678L);
+        assertEquals(TT_TYPE_EXACT, ttValue & TT_TYPE);
+        assertEquals(move, (int) ((ttValue & TT_MOVE) >> TT_SHIFT_MOVE));
+        assertEquals(5, (int) ((ttValue & TT_DEPTH) >> TT_SHIFT_DEPTH));
+        assertEquals(1000, (int) ((ttValue & TT_VALUE) >> TT_SHIFT_VALUE));
+        assertEquals(0, table.read(0x1234567812345679L));
+    }
+
+    public void testDeeperEntryIsKept() {
+        final TranspositionTable table = new TranspositionTable();
+        final int move = StringUtils.fromSimple("e2e4");
+        table.set(0x1234567812345678L, TT_TYPE_BETA_CUT, move, 5, 1000);
+        table.set(0x1234567812345678L, TT_TYPE_BETA_CUT, move, 3, 2000);
+        assertEquals(1000, (int) ((table.read(0x1234567812345678L) & TT_VALUE) >> TT_SHIFT_VALUE));
+        table.set(0x1234567812345678L, TT_TYPE_BETA_CUT, move, 6, 3000);
+        assertEquals(3000, (int) ((table.read(0x1234567812345678L) & TT_VALUE) >> TT_SHIFT_VALUE));
+    }
+
+    public void testOldestEntryIsReplacedInFullBucket() {
+        final TranspositionTable table = new TranspositionTable();
+        final int move = StringUtils.fromSimple("e2e4");
+        // same low bits and same upper half: all keys land in the same bucket
+        final long[] keys = new long[5];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0x1234567800000000L | ((long) (i + 1) << 24);
+            table.setAge(i + 1);
+            table.set(keys[i], TT_TYPE_EXACT, move, 4, 1000 + i);
+        }
+        assertEquals(0, table.read(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertEquals(1000 + i, (int) ((table.read(keys[i]) & TT_VALUE) >> TT_SHIFT_VALUE));
+        }
+    }
+
+    public void testClear() {
+        final TranspositionTable table = new TranspositionTable();
+        final long emptySlots = table.scan();
+        table.set(0x1234567812345678L, TT_TYPE_EXACT, StringUtils.fromSimple("e2e4"), 5, 1000);
+        assertEquals(emptySlots - 1, table.scan());
+        table.clear();
+        assertEquals(0, table.read(0x1234567812345678L));
+        assertEquals(emptySlots, table.scan());
+    }
+
+    public void testDirectBackend() {
+        final Configuration config = Configuration.getInstance();
+        config.setProperty(Configurable.Key.TRANSP_TABLE_BACKEND, BACKEND_DIRECT);
+        config.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, "3");
+        try {
+            final TranspositionTable table = new TranspositionTable();
+            assertEquals(3 * 1024 * 1024 / 16, table.scan());
+            final int move = StringUtils.fromSimple("e2e4");
+            table.set(0x1234567812345678L, TT_TYPE_BETA_CUT, move, 5, 1000);
+            table.set(0x7234567812345678L, TT_TYPE_EXACT, move, 7, 2000);
+            assertEquals(1000, (int) ((table.read(0x1234567812345678L) & TT_VALUE) >> TT_SHIFT_VALUE));
+            assertEquals(2000, (int) ((table.read(0x7234567812345678L) & TT_VALUE) >> TT_SHIFT_VALUE));
+            assertEquals(0, table.read(0x1234567812345679L));
+            table.clear();
+            assertEquals(0, table.read(0x1234567812345678L));
+        } finally {
+            config.setProperty(Configurable.Key.TRANSP_TABLE_BACKEND, BACKEND_HEAP);
+            config.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, "1");
+        }
+    }
+
+    public void testSaveAndLoad() throws IOException {
+        final File file = File.createTempFile("pnr-tt", ".bin");
+        try {
+            final TranspositionTable table = new TranspositionTable();
+            final int move = StringUtils.fromSimple("e2e4");
+            table.set(0x1234567812345678L, TT_TYPE_EXACT, move, 5, 1000);
+            table.save(file);
+
+            final TranspositionTable loaded = new TranspositionTable();
+            loaded.load(file);
+            assertEquals(table.read(0x1234567812345678L), loaded.read(0x1234567812345678L));
+            assertEquals(table.scan(), loaded.scan());
+
+            // changes to the loaded table don't go back to the file
+            loaded.set(0x7234567812345678L, TT_TYPE_EXACT, move, 7, 2000);
+            assertEquals(2000, (int) ((loaded.read(0x7234567812345678L) & TT_VALUE) >> TT_SHIFT_VALUE));
+            final TranspositionTable reloaded = new TranspositionTable();
+            reloaded.load(file);
+            assertEquals(0, reloaded.read(0x7234567812345678L));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testSaveAndLoadHeap() throws IOException {
+        assertSaveAndLoad(BACKEND_HEAP, BACKEND_HEAP);
+    }
+
+    public void testSaveAndLoadDirect() throws IOException {
+        assertSaveAndLoad(BACKEND_DIRECT, BACKEND_DIRECT);
+    }
+
+    public void testLoadHeapSavedIntoDirect() throws IOException {
+        assertSaveAndLoad(BACKEND_HEAP, BACKEND_DIRECT);
+    }
+
+    private static void assertSaveAndLoad(final String saveBackend, final String loadBackend) throws IOException {
+        final Configuration config = Configuration.getInstance();
+        final File file = File.createTempFile("pnr-tt", ".bin");
+        final File resaved = File.createTempFile("pnr-tt", ".bin");
+        // three 1MB segments, all of them end up in the same mapping when loaded
+        config.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, "3");
+        try {
+            config.setProperty(Configurable.Key.TRANSP_TABLE_BACKEND, saveBackend);
+            final TranspositionTable table = new TranspositionTable();
+            final long[] keys = new long[10000];
+            final Random rnd = new Random(1);
+            final int move = StringUtils.fromSimple("e2e4");
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = rnd.nextLong();
+                table.set(keys[i], TT_TYPE_EXACT, move, i % 64, i % 1000);
+            }
+            table.save(file);
+
+            config.setProperty(Configurable.Key.TRANSP_TABLE_BACKEND, loadBackend);
+            final TranspositionTable loaded = new TranspositionTable();
+            loaded.load(file);
+            assertEquals(table.scan(), loaded.scan());
+            for (long key: keys) {
+                assertEquals(table.read(key), loaded.read(key));
+            }
+
+            // the loaded table writes the same file
+            loaded.save(resaved);
+            assertEquals(file.length(), resaved.length());
+            final TranspositionTable reloaded = new TranspositionTable();
+            reloaded.load(resaved);
+            for (long key: keys) {
+                assertEquals(table.read(key), reloaded.read(key));
+            }
+        } finally {
+            config.setProperty(Configurable.Key.TRANSP_TABLE_BACKEND, BACKEND_HEAP);
+            config.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, "1");
+            file.delete();
+            resaved.delete();
+        }
+    }
+}
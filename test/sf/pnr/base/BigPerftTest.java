@@ -21,19 +21,34 @@ public class BigPerftTest extends TestCase {
         testFiles.add("perftsuite.epd");
         final int maxDepth = Integer.parseInt(System.getProperty("perftBig.maxDepth", "100"));
         final boolean failOnFirstError = Boolean.parseBoolean(System.getProperty("perftBig.failOnFirstError", "true"));
-        final PerftTask task = new PerftTask(maxDepth, failOnFirstError);
-        new EpdProcessor(this.getClass()).process(testFiles, task);
+        final boolean magicBitboards = Boolean.parseBoolean(System.getProperty("perftBig.magicBitboards", "false"));
+        final int threads = Integer.parseInt(
+            System.getProperty("perftBig.threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        final int hashSizeMB =
+            Integer.parseInt(System.getProperty("perftBig.hashSizeMB", Integer.toString(Perft.DEFAULT_HASH_SIZE_MB)));
+        final Perft perft = new Perft(threads, hashSizeMB, magicBitboards);
+        final PerftTask task = new PerftTask(perft, maxDepth, failOnFirstError);
+        final long start = System.currentTimeMillis();
+        try {
+            new EpdProcessor(this.getClass()).process(testFiles, task);
+        } finally {
+            perft.shutdown();
+        }
+        final long time = Math.max(System.currentTimeMillis() - start, 1);
+        System.out.printf("Perft nodes: %d, time: %d ms, nps: %d (magic bitboards: %b)\r\n",
+            task.getNodeCount(), time, task.getNodeCount() * 1000 / time, magicBitboards);
         assertTrue(task.getFailures().isEmpty());
     }
 
     private static class PerftTask implements EpdProcessorTask {
-        private final MoveGenerator moveGenerator;
+        private final Perft perft;
         private final List<PerftFailure> failures;
         private final double maxDepth;
         private final boolean failOnFirstError;
+        private long nodeCount;
 
-        public PerftTask(final double maxDepth, final boolean failOnFirstError) {
-            moveGenerator = new MoveGenerator();
+        public PerftTask(final Perft perft, final double maxDepth, final boolean failOnFirstError) {
+            this.perft = perft;
             failures = new ArrayList<PerftFailure>(100);
             this.maxDepth = maxDepth;
             this.failOnFirstError = failOnFirstError;
@@ -50,7 +65,8 @@ public class BigPerftTest extends TestCase {
                     continue;
                 }
                 final long expected = Long.parseLong(parameter);
-                final long actual = PerftTest.perft(board, depth, moveGenerator);
+                final long actual = perft.perft(board, depth);
+                nodeCount += actual;
                 if (failOnFirstError) {
                     assertEquals("FEN: " + StringUtils.toFen(board), expected, actual);
                 } else {
@@ -72,6 +88,10 @@ public class BigPerftTest extends TestCase {
             return failures;
         }
 
+        public long getNodeCount() {
+            return nodeCount;
+        }
+
         public static class PerftFailure {
             final String fen;
             final int depth;
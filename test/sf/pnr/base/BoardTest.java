@@ -331,6 +331,50 @@ public class BoardTest extends TestCase {
         assertEquals(8, board.getPieces(BLACK_TO_MOVE, PAWN)[0]);
     }
 
+    public void testPieceBitboards() {
+        final Board board = new Board();
+        board.restart();
+        assertEquals(0x000000000000FF00L, board.getBitboard(WHITE, PAWN));
+        assertEquals(0x00FF000000000000L, board.getBitboard(BLACK, PAWN));
+        assertEquals(0x0000000000000042L, board.getBitboard(WHITE, KNIGHT));
+        assertEquals(0x1000000000000000L, board.getBitboard(BLACK, KING));
+        final long undo = board.move(fromSimple("g1f3"));
+        assertEquals(0x0000000000200002L, board.getBitboard(WHITE, KNIGHT));
+        board.takeBack(undo);
+        assertEquals(0x0000000000000042L, board.getBitboard(WHITE, KNIGHT));
+    }
+
+    public void testIncrementalScores() {
+        final Board board = fromFen("r3k2r/1P3ppp/8/3n4/8/5N2/5PPP/R3K2R w KQkq - 0 1");
+        final int materialWhite = board.getMaterialValue(WHITE);
+        final int materialBlack = board.getMaterialValue(BLACK);
+        final int openingWhite = board.getPositionalBonusOpening(WHITE);
+        final int endgameWhite = board.getPositionalBonusEndgame(WHITE);
+        final long undo1 = board.move(fromSimple("b7a8Q"));
+        assertScores(board);
+        final long undo2 = board.move(fromSimple("d5c3"));
+        assertScores(board);
+        final long undo3 = board.move(fromSimple("e1c1"));
+        assertScores(board);
+        board.takeBack(undo3);
+        board.takeBack(undo2);
+        board.takeBack(undo1);
+        assertEquals(materialWhite, board.getMaterialValue(WHITE));
+        assertEquals(materialBlack, board.getMaterialValue(BLACK));
+        assertEquals(openingWhite, board.getPositionalBonusOpening(WHITE));
+        assertEquals(endgameWhite, board.getPositionalBonusEndgame(WHITE));
+    }
+
+    private static void assertScores(final Board board) {
+        for (int side = BLACK; side <= WHITE; side++) {
+            assertEquals(Evaluation.computeMaterialValueOneSide(board, side), board.getMaterialValue(side));
+            assertEquals(Evaluation.computePositionalBonusOneSide(board, side, Evaluation.VAL_POSITION_BONUS_OPENING),
+                board.getPositionalBonusOpening(side));
+            assertEquals(Evaluation.computePositionalBonusOneSide(board, side, Evaluation.VAL_POSITION_BONUS_ENDGAME),
+                board.getPositionalBonusEndgame(side));
+        }
+    }
+
     public void testIsMate() {
         final Board board = fromFen("r3qk1r/ppp1n2p/3p1p2/8/4P3/1BpP4/PPP3PP/R1B1K2R w KQ - 0 1");
         assertFalse(board.isMate());
@@ -395,6 +439,7 @@ public class BoardTest extends TestCase {
 
 	private static void checkPieceListConsistency(final Board board, final int piece, final int side) {
         final int signum = side == WHITE? 1: -1;
+        assertEquals(BitBoard.computePieces(board, side, piece), board.getBitboard(side, piece));
         final int[] pieceArrayPositions = board.getPieceArrayPositions();
         final int[] squares = board.getBoard();
         if (piece == KING) {
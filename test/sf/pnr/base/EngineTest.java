@@ -51,6 +51,58 @@ public class EngineTest extends TestCase {
         assertTrue(Integer.toString(score), score < -VAL_QUEEN * 0.7 && score > -VAL_QUEEN * 1.3);
     }
 
+    public void testMultiPv() {
+        final Configuration configuration = Configuration.getInstance();
+        configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, "3");
+        try {
+            final int[][] lines = new int[6][4];
+            engine.setBestMoveListener(new BestMoveListener() {
+                @Override
+                public void bestMoveChanged(final int depth, final int bestMove, final int value, final long time,
+                                            final int[] bestLine, final long nodes, final int pvIndex) {
+                    assertEquals(bestMove, bestLine[0]);
+                    lines[depth][pvIndex] = bestMove;
+                }
+            });
+            final Board board = new Board();
+            board.restart();
+            final long result = engine.search(board, 5, 0);
+            for (int depth = 1; depth <= 5; depth++) {
+                assertTrue(lines[depth][1] != 0 && lines[depth][2] != 0 && lines[depth][3] != 0);
+                assertTrue(lines[depth][1] != lines[depth][2] && lines[depth][1] != lines[depth][3] &&
+                    lines[depth][2] != lines[depth][3]);
+            }
+            assertEquals(lines[5][1], getMoveFromSearchResult(result));
+        } finally {
+            configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, "1");
+            engine.setBestMoveListener(null);
+        }
+    }
+
+    public void testNodeLimit() {
+        final Board board = new Board();
+        board.restart();
+        final long result = engine.search(board, 0, 0, 20000, 0, null);
+        assertTrue(getMoveFromSearchResult(result) != 0);
+        final long nodeCount = engine.getTotalNodeCount();
+        assertTrue(Long.toString(nodeCount), nodeCount >= 20000 && nodeCount < 21000);
+    }
+
+    public void testSearchMoves() {
+        final Board board = new Board();
+        board.restart();
+        final int[] searchMoves = new int[] {fromSimple("a2a3"), fromSimple("h2h4")};
+        final int move = getMoveFromSearchResult(engine.search(board, 5, 0, 0, 0, searchMoves)) & BASE_INFO;
+        assertTrue(toSimple(move), move == searchMoves[0] || move == searchMoves[1]);
+    }
+
+    public void testMateIn() {
+        final Board board = fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        final long result = engine.search(board, 0, 0, 0, 1, null);
+        assertEquals("a1a8", toSimple(getMoveFromSearchResult(result)));
+        assertTrue(getValueFromSearchResult(result) > VAL_MATE_THRESHOLD);
+    }
+
     public void testTranspTable() {
         final Board board = fromFen("5rk1/5Npp/8/3Q4/8/8/8/7K w - - 0 1");
         final int score = Engine.getValueFromSearchResult(engine.search(board, 6, 0));
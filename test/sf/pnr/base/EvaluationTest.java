@@ -23,6 +23,29 @@ public class EvaluationTest extends TestCase {
         super.tearDown();
     }
 
+    public void testLazyEval() {
+        // white is a queen up
+        final Board board = StringUtils.fromFen("rnb1kbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3");
+        final int lazyScore = eval.evaluate(board, -100, -50);
+        if (SearchStats.ENABLED) {
+            assertEquals(1, eval.getLazyEvalCutCount());
+        }
+        assertTrue(lazyScore > -50 + LAZY_EVAL_MARGIN);
+        // the lazy score isn't stored in the hash table
+        assertEquals(0, eval.getEvalHashTable().read(board.getZobristKey() ^ ZOBRIST_TO_MOVE[WHITE_TO_MOVE]));
+
+        final int score = eval.evaluate(board, lazyScore - 10, lazyScore + 10);
+        if (SearchStats.ENABLED) {
+            assertEquals(1, eval.getLazyEvalCutCount());
+            assertEquals(2, eval.getLazyEvalCheckCount());
+        }
+        assertEquals(score, eval.evaluate(board));
+        if (SearchStats.ENABLED) {
+            // the full window evaluation doesn't attempt a lazy cut
+            assertEquals(2, eval.getLazyEvalCheckCount());
+        }
+    }
+
     public void testDrawByInsufficientMaterialKK() {
         final Board board = StringUtils.fromFen("4k3/8/8/8/3K4/8/8/8 w - - 0 1");
         assertTrue(Evaluation.drawByInsufficientMaterial(board));
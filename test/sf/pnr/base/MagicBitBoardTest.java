@@ -0,0 +1,27 @@
+package sf.pnr.base;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class MagicBitBoardTest extends TestCase {
+
+    public void testAttacksMatchRays() {
+        final Random rnd = new Random(42);
+        for (int pos64 = 0; pos64 < 64; pos64++) {
+            for (int i = 0; i < 1000; i++) {
+                final long occupied = rnd.nextLong() & rnd.nextLong();
+                assertEquals(MagicBitBoard.computeRookAttacks(pos64, occupied),
+                    MagicBitBoard.getRookAttacks(pos64, occupied));
+                assertEquals(MagicBitBoard.computeBishopAttacks(pos64, occupied),
+                    MagicBitBoard.getBishopAttacks(pos64, occupied));
+            }
+        }
+    }
+
+    public void testEmptyBoard() {
+        // rook on a1 sees the whole first rank and a file, bishop on d4 sees both diagonals
+        assertEquals(0x01010101010101FEL, MagicBitBoard.getRookAttacks(0, 0L));
+        assertEquals(0x8041221400142241L, MagicBitBoard.getBishopAttacks(27, 0L));
+    }
+}
@@ -231,6 +231,67 @@ public class MoveGeneratorTest extends TestCase {
             new MoveGenerator().staticExchangeEvaluation(board, fromString0x88("g5"), fromString0x88("f6")));
     }
 
+    public void testStagedGenerationMatchesPseudoLegal() {
+        final String[] fens = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+            "8/2p5/3p4/KP5r/1R2Pp1k/8/6P1/8 b - e3 0 1"
+        };
+        for (String fen: fens) {
+            final Board board = fromFen(fen);
+            moveGenerator.generatePseudoLegalMoves(board);
+            moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+            final int[] captures = copy(moveGenerator.getCaptures());
+            final int[] promotions = copy(moveGenerator.getPromotions());
+            final int[] moves = copy(moveGenerator.getMoves());
+            moveGenerator.generateCaptures(board);
+            assertSameMoves(fen, captures, moveGenerator.getCaptures());
+            moveGenerator.generatePromotions(board);
+            assertSameMoves(fen, promotions, moveGenerator.getPromotions());
+            moveGenerator.generateQuietMoves(board);
+            assertSameMoves(fen, moves, moveGenerator.getMoves());
+        }
+    }
+
+    public void testStagedGenerationWithoutMagicBitboards() {
+        final MoveGenerator rays = new MoveGenerator(false);
+        final MoveGenerator magic = new MoveGenerator(true);
+        rays.pushFrame();
+        magic.pushFrame();
+        final String[] fens = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+            "8/2p5/3p4/KP5r/1R2Pp1k/8/6P1/8 b - e3 0 1"
+        };
+        for (String fen: fens) {
+            final Board board = fromFen(fen);
+            rays.generateCaptures(board);
+            magic.generateCaptures(board);
+            assertSameMoves(fen, copy(magic.getCaptures()), rays.getCaptures());
+            rays.generateQuietMoves(board);
+            magic.generateQuietMoves(board);
+            assertSameMoves(fen, copy(magic.getMoves()), rays.getMoves());
+        }
+    }
+
+    private static int[] copy(final int[] moves) {
+        final int[] copy = new int[moves[0] + 1];
+        System.arraycopy(moves, 0, copy, 0, copy.length);
+        return copy;
+    }
+
+    private static void assertSameMoves(final String fen, final int[] expected, final int[] actual) {
+        assertEquals(fen, expected[0], actual[0]);
+        for (int i = 1; i <= expected[0]; i++) {
+            boolean found = false;
+            for (int j = 1; j <= actual[0] && !found; j++) {
+                found = expected[i] == actual[j];
+            }
+            assertTrue(fen + ", move: " + toSimple(expected[i]), found);
+        }
+    }
+
     public static boolean containsMoves(final int[] moves, final int... containedMoves) {
         for (int move: containedMoves) {
             if (containsMove(moves, move)) {
@@ -0,0 +1,43 @@
+package sf.pnr.base;
+
+import junit.framework.TestCase;
+
+import static sf.pnr.base.StringUtils.fromFen;
+
+/**
+ */
+public class ParallelSearchTest extends TestCase {
+
+    private static final String FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Override
+    protected void tearDown() throws Exception {
+        Configuration.getInstance().setProperty(Configurable.Key.ENGINE_THREADS, "1");
+        super.tearDown();
+    }
+
+    public void testFixedDepth() throws InterruptedException {
+        for (int threads = 2; threads <= 4; threads++) {
+            Configuration.getInstance().setProperty(Configurable.Key.ENGINE_THREADS, Integer.toString(threads));
+            final Engine engine = new Engine();
+            final Board board = fromFen(FEN);
+            final long result = engine.search(board, 5, 0);
+            final int move = Engine.getMoveFromSearchResult(result);
+            assertTrue(threads + " threads", isLegal(fromFen(FEN), move));
+            assertEquals(FEN, StringUtils.toFen(board));
+
+            // the helpers searched too and they are stopped by the time the search returns
+            final long totalNodes = engine.getTotalNodeCount();
+            assertTrue(threads + " threads", totalNodes > engine.getNodeCount());
+            Thread.sleep(50);
+            assertEquals(threads + " threads", totalNodes, engine.getTotalNodeCount());
+        }
+    }
+
+    private static boolean isLegal(final Board board, final int move) {
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
+        return move != 0 && moveGenerator.isLegal(board, move);
+    }
+}
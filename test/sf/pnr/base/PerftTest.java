@@ -10,12 +10,13 @@ import static sf.pnr.base.Utils.WHITE_TO_MOVE;
 public class PerftTest extends TestCase {
     private int maxDepth;
 
-    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private MoveGenerator moveGenerator;
 
     @Override
     protected void setUp() throws Exception {
         super.setUp();
         maxDepth = Integer.parseInt(System.getProperty("perft.maxDepth", "100"));
+        moveGenerator = new MoveGenerator(Boolean.parseBoolean(System.getProperty("perft.magicBitboards", "false")));
     }
 
     public void testInitialPosition() {
@@ -99,6 +100,104 @@ public class PerftTest extends TestCase {
         runPerftTest(13, board, 1);
     }
 
+    public void testMagicBitboardsMatchRays() {
+        final MoveGenerator rays = new MoveGenerator(false);
+        final MoveGenerator magic = new MoveGenerator(true);
+        final String[] fens = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+            "8/8/3p4/KPp4r/4P2k/8/1R4p1/8 b - - 1 4"
+        };
+        for (String fen: fens) {
+            final Board board = fromFen(fen);
+            final int depth = Math.min(3, maxDepth);
+            assertEquals(fen, perft(board, depth, rays), perft(board, depth, magic));
+        }
+    }
+
+    public void testLegalMoveGeneration() {
+        final String[] fens = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+            "8/8/3p4/KPp4r/4P2k/8/1R4p1/8 b - - 1 4",
+            "8/2p5/3p4/KP5r/1R2Pp1k/8/6P1/8 b - e3 0 1"
+        };
+        for (String fen: fens) {
+            final Board board = fromFen(fen);
+            final int depth = Math.min(3, maxDepth);
+            assertEquals(fen, perft(board, depth, moveGenerator), perftLegal(board, depth, moveGenerator));
+        }
+    }
+
+    public void testParallelPerftMatchesSequential() {
+        final String[] fens = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/7p/p5pb/4k3/P1pPn3/8/P5PP/1rB2RK1 b - d3 0 28",
+            "8/8/3p4/KPp4r/4P2k/8/1R4p1/8 b - - 1 4"
+        };
+        final Perft perft = new Perft(2, 1, false);
+        try {
+            for (String fen: fens) {
+                final Board board = fromFen(fen);
+                for (int depth = 1; depth <= Math.min(4, maxDepth); depth++) {
+                    final long expected = perft(board, depth);
+                    assertEquals(fen + ", depth " + depth, expected, perft.perft(board, depth));
+                    long total = 0;
+                    for (long count: perft.divide(board, depth).values()) {
+                        total += count;
+                    }
+                    assertEquals(fen + ", depth " + depth, expected, total);
+                }
+                assertEquals(fen, toFen(board), toFen(fromFen(fen)));
+            }
+        } finally {
+            perft.shutdown();
+        }
+    }
+
+    public static long perftLegal(final Board board, final int depth, final MoveGenerator moveGenerator) {
+        if (depth == 0) {
+            return 1;
+        }
+        moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
+        if (moveGenerator.isInCheck()) {
+            moveGenerator.generateEvasions(board);
+        } else {
+            moveGenerator.generatePseudoLegalMoves(board);
+            moveGenerator.generatePseudoLegalMovesNonAttacking(board);
+        }
+        long moveCount = playLegalMoves(board, depth, moveGenerator, moveGenerator.getCaptures());
+        moveCount += playLegalMoves(board, depth, moveGenerator, moveGenerator.getPromotions());
+        moveCount += playLegalMoves(board, depth, moveGenerator, moveGenerator.getMoves());
+        moveGenerator.popFrame();
+        return moveCount;
+    }
+
+    private static long playLegalMoves(final Board board, final int depth, final MoveGenerator moveGenerator,
+                                       final int[] moves) {
+        long moveCount = 0;
+        final boolean inCheck = moveGenerator.isInCheck();
+        for (int i = moves[0]; i > 0; i--) {
+            final int move = moves[i];
+            final boolean legal = moveGenerator.isLegal(board, move);
+            final int toMove = board.getState() & WHITE_TO_MOVE;
+            final long undo = board.move(move);
+            assertEquals(StringUtils.toFen(board) + ", move: " + toSimple(move), !board.attacksKing(1 - toMove), legal);
+            if (legal) {
+                moveCount += perftLegal(board, depth - 1, moveGenerator);
+            } else {
+                assertFalse(inCheck);
+            }
+            board.takeBack(undo);
+        }
+        return moveCount;
+    }
+
     private void runPerftTest(final long expected, final Board board, final int depth) {
         if (depth <= maxDepth) {
             assertEquals(expected, perft(board, depth));
@@ -0,0 +1,84 @@
+package sf.pnr.base;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ */
+public class PgnReaderTest extends TestCase {
+
+    private static final String GAMES = "[Event \"112.New York (F.V)\"]\n" +
+        "[White \"Alekhine, Alexander A\"]\n" +
+        "[Black \"Freeman\"]\n" +
+        "[Result \"1-0\"]\n" +
+        "\n" +
+        "1.e4 e5 2.d4 exd4 3.c3 d5 4.exd5 Qxd5 5.cxd4 Bb4+ 6.Nc3 Nc6 7.Nf3 Nf6 8.\n" +
+        "Be2 O-O 9.O-O Bxc3 10.bxc3 b6 11.c4 Qd8 12.d5 Ne7 13.Nd4 Bb7 14.Bb2 c6 15.\n" +
+        "Bf3 cxd5 16.Re1 Re8 17.Qc1 Rb8 18.Qg5 Ng6 19.Nf5 Rxe1+ 20.Rxe1 dxc4 21.\n" +
+        "Bxb7 Rxb7 22.Bxf6 Qxf6 23.Re8+ Nf8 24.Nh6+ Qxh6 25.Rxf8+ Kxf8 26.Qd8# 1-0\n" +
+        "\n" +
+        "[Event \"Annotated\"]\n" +
+        "[Result \"1/2-1/2\"]\n" +
+        "\n" +
+        "1. e4 {best by test} c5 $1 2. Nf3 (2. c3 d5 (2... Nf6) 3. exd5) 2... d6!? ; comment\n" +
+        "3. d4 cxd4 1/2-1/2\n" +
+        "\n" +
+        "[Event \"Unfinished\"]\n" +
+        "[FEN \"4k3/8/8/8/8/8/4P3/4K3 w - - 0 1\"]\n" +
+        "\n" +
+        "1. e4 Kd7 *\n";
+
+    public void testNext() throws IOException {
+        final PgnReader reader = new PgnReader(toChannel(GAMES));
+        final PgnGame game = new PgnGame();
+        final Board board = new Board();
+        final int[] moves = new int[100];
+
+        assertTrue(reader.next(game));
+        assertEquals("Freeman", game.getHeader("Black"));
+        assertEquals("1-0", game.getResult());
+        assertEquals(51, game.parseMoves(board, moves));
+        assertEquals("3Q1k2/pr3ppp/1p5q/8/2p5/8/P4PPP/6K1 b - - 1 26", StringUtils.toFen(board));
+
+        assertTrue(reader.next(game));
+        assertEquals("Annotated", game.getHeader("Event"));
+        assertEquals("1/2-1/2", game.getResult());
+        assertEquals(6, game.getMoveCount());
+        assertEquals("d6", game.getSan(3));
+        assertEquals(6, game.parseMoves(board, moves));
+        assertEquals("rnbqkbnr/pp2pppp/3p4/8/3pP3/5N2/PPP2PPP/RNBQKB1R w KQkq - 0 4", StringUtils.toFen(board));
+
+        assertTrue(reader.next(game));
+        assertEquals("*", game.getResult());
+        assertEquals(2, game.parseMoves(board, moves));
+        assertEquals("8/3k4/8/8/4P3/8/8/4K3 w - - 1 2", StringUtils.toFen(board));
+
+        assertFalse(reader.next(game));
+    }
+
+    public void testProcess() throws IOException {
+        final AtomicInteger moveCount = new AtomicInteger();
+        final long processed = PgnReader.process(toChannel(GAMES), 2, new PgnReader.GameFilter() {
+            @Override
+            public boolean accept(final PgnGame game) {
+                return !"*".equals(game.getResult());
+            }
+        }, new PgnReader.GameProcessor() {
+            @Override
+            public void process(final PgnGame game, final Board board) {
+                moveCount.addAndGet(game.parseMoves(board, new int[game.getMoveCount()]));
+            }
+        });
+        assertEquals(2, processed);
+        assertEquals(57, moveCount.get());
+    }
+
+    private static ReadableByteChannel toChannel(final String pgn) {
+        return Channels.newChannel(new ByteArrayInputStream(pgn.getBytes()));
+    }
+}
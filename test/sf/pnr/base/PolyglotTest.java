@@ -2,6 +2,14 @@ package sf.pnr.base;
 
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
 import static sf.pnr.base.StringUtils.fromFen;
 
 /**
@@ -22,4 +30,82 @@ public class PolyglotTest extends TestCase {
         final Board board = fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
         assertTrue(new Polyglot().readMove(board) != 0);
     }
+
+    public void testAllCandidates() {
+        Configuration.getInstance().setProperty(Configurable.Key.POLYGLOT_BOOK,
+            PolyglotTest.class.getResource("res/performance.bin").getFile());
+        final Board board = new Board();
+        board.restart();
+        final Map<Integer, Integer> moves = new Polyglot().readMoves(board);
+        assertTrue(moves.size() > 2);
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        moveGenerator.pushFrame();
+        moveGenerator.computeCheckAndPins(board);
+        for (int move: moves.keySet()) {
+            assertTrue(StringUtils.toSimple(move), moveGenerator.isLegal(board, move));
+        }
+    }
+
+    public void testSeveralBooks() {
+        final String book = PolyglotTest.class.getResource("res/performance.bin").getFile();
+        final Configuration configuration = Configuration.getInstance();
+        configuration.setProperty(Configurable.Key.POLYGLOT_BOOK, book);
+        final Board board = new Board();
+        board.restart();
+        final Map<Integer, Integer> single = new Polyglot().readMoves(board);
+        configuration.setProperty(Configurable.Key.POLYGLOT_BOOKS, book);
+        try {
+            final Map<Integer, Integer> merged = new Polyglot().readMoves(board);
+            assertEquals(single.keySet(), merged.keySet());
+            for (Map.Entry<Integer, Integer> entry: single.entrySet()) {
+                assertEquals(entry.getValue() * 2, merged.get(entry.getKey()).intValue());
+            }
+        } finally {
+            configuration.setProperty(Configurable.Key.POLYGLOT_BOOKS, "");
+        }
+    }
+
+    public void testBookAppearsLater() throws IOException {
+        final File book = File.createTempFile("pnr-book", ".bin");
+        book.delete();
+        final Configuration configuration = Configuration.getInstance();
+        configuration.setProperty(Configurable.Key.POLYGLOT_BOOK, book.getAbsolutePath());
+        try {
+            final Board board = new Board();
+            board.restart();
+            assertTrue(new Polyglot().readMoves(board).isEmpty());
+            // a book that couldn't be read isn't remembered as empty
+            copy(new File(PolyglotTest.class.getResource("res/performance.bin").getFile()), book);
+            assertTrue(new Polyglot().readMoves(board).size() > 2);
+        } finally {
+            configuration.setProperty(Configurable.Key.POLYGLOT_BOOK, "");
+            book.delete();
+        }
+    }
+
+    public void testToPolyglotMove() {
+        assertEquals(0x031C, Polyglot.toPolyglotMove(StringUtils.fromSimple("e2e4")));
+        final Board board = fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals(0x0107, Polyglot.toPolyglotMove(StringUtils.fromShort(board, "O-O")));
+        assertEquals(0x0100, Polyglot.toPolyglotMove(StringUtils.fromShort(board, "O-O-O")));
+        final Board promotion = fromFen("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        assertEquals(0x4C38, Polyglot.toPolyglotMove(StringUtils.fromShort(promotion, "a8=Q")));
+    }
+
+    private static void copy(final File from, final File to) throws IOException {
+        final InputStream is = new FileInputStream(from);
+        try {
+            final OutputStream os = new FileOutputStream(to);
+            try {
+                final byte[] buffer = new byte[8192];
+                for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+                    os.write(buffer, 0, read);
+                }
+            } finally {
+                os.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package sf.pnr.base;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class SearchStatsTest extends TestCase {
+
+    public void testTtCuts() {
+        final SearchStats stats = new SearchStats();
+        stats.ttProbe(SearchStats.NODE_PV, 0);
+        stats.ttNoCut(SearchStats.NODE_PV, 0);
+        stats.ttProbe(SearchStats.NODE_PV, 1);
+        stats.ttNoCut(SearchStats.NODE_PV, 1);
+        stats.ttProbe(SearchStats.NODE_PV, 1);
+        assertEquals(3, stats.getTtProbes(SearchStats.NODE_PV));
+        assertEquals(2, stats.getTtHits(SearchStats.NODE_PV));
+        assertEquals(1, stats.getTtCuts(SearchStats.NODE_PV));
+        assertEquals(0, stats.getTtProbes(SearchStats.NODE_NON_PV));
+    }
+
+    public void testAddAndReset() {
+        final SearchStats stats1 = new SearchStats();
+        stats1.setNodes(100);
+        stats1.nullMove(true);
+        stats1.betaCutoff(1);
+        final SearchStats stats2 = new SearchStats();
+        stats2.setNodes(50);
+        stats2.nullMove(false);
+        stats2.betaCutoff(3);
+        stats1.add(stats2);
+        assertEquals(150, stats1.getNodes());
+        assertEquals(2, stats1.getNullMoveTries());
+        assertEquals(1, stats1.getNullMoveCuts());
+        assertEquals(2, stats1.getBetaCutoffs());
+        assertEquals(1, stats1.getFirstMoveCutoffs());
+        stats1.reset();
+        assertEquals(0, stats1.getNodes());
+        assertEquals(0, stats1.getNullMoveTries());
+        assertEquals(0, stats1.getBetaCutoffs());
+    }
+
+    public void testToJson() {
+        final SearchStats stats = new SearchStats();
+        stats.setNodes(10);
+        stats.lateMoveReduction(true);
+        stats.setEvalHashCounts(4, 3);
+        final String json = stats.toJson();
+        assertTrue(json, json.startsWith("{\"nodes\": 10, "));
+        assertTrue(json, json.contains("\"lmr\": {\"searches\": 1, \"researches\": 1}"));
+        assertTrue(json, json.endsWith("\"evalHash\": {\"probes\": 4, \"hits\": 3}}"));
+    }
+}
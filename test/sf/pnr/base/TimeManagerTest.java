@@ -0,0 +1,64 @@
+package sf.pnr.base;
+
+import junit.framework.TestCase;
+
+import static sf.pnr.base.StringUtils.*;
+
+/**
+ */
+public class TimeManagerTest extends TestCase {
+
+    private static final int E2E4 = fromSimple("e2e4");
+    private static final int D2D4 = fromSimple("d2d4");
+
+    public void testNoTimeLimit() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(0, 0);
+        assertTrue(timeManager.iterationFinished(1, E2E4, 0, 1000000));
+    }
+
+    public void testFixedTime() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(1000, 1000);
+        for (int depth = 1; depth < 10; depth++) {
+            assertTrue(timeManager.iterationFinished(depth, E2E4, 0, 800));
+        }
+        assertFalse(timeManager.iterationFinished(10, E2E4, 0, 950));
+    }
+
+    public void testStableBestMove() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(1000, 4000);
+        assertTrue(timeManager.iterationFinished(1, E2E4, 0, 700));
+        assertTrue(timeManager.iterationFinished(2, E2E4, 0, 700));
+        assertTrue(timeManager.iterationFinished(3, E2E4, 0, 700));
+        assertTrue(timeManager.iterationFinished(4, E2E4, 0, 700));
+        assertFalse(timeManager.iterationFinished(5, E2E4, 0, 700));
+    }
+
+    public void testBestMoveChanges() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(1000, 4000);
+        assertFalse(timeManager.iterationFinished(1, E2E4, 0, 1200));
+        timeManager.start(1000, 4000);
+        assertTrue(timeManager.iterationFinished(1, E2E4, 0, 100));
+        assertTrue(timeManager.iterationFinished(2, D2D4, 0, 200));
+        assertTrue(timeManager.iterationFinished(3, E2E4, 0, 400));
+        assertTrue(timeManager.iterationFinished(4, D2D4, 0, 1200));
+    }
+
+    public void testScoreDrop() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(1000, 4000);
+        assertTrue(timeManager.iterationFinished(1, E2E4, 0, 100));
+        assertTrue(timeManager.iterationFinished(2, E2E4, -100, 1500));
+        assertFalse(timeManager.iterationFinished(3, E2E4, -100, 1500));
+    }
+
+    public void testHardLimit() {
+        final TimeManager timeManager = new TimeManager();
+        timeManager.start(1000, 1500);
+        assertTrue(timeManager.iterationFinished(1, E2E4, 0, 100));
+        assertFalse(timeManager.iterationFinished(2, D2D4, -150, 1400));
+    }
+}
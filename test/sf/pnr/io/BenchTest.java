@@ -0,0 +1,37 @@
+package sf.pnr.io;
+
+import junit.framework.TestCase;
+import sf.pnr.base.Configurable;
+import sf.pnr.base.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class BenchTest extends TestCase {
+
+    public void testNodeCountIsDeterministic() {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(os);
+        final long nodes = Bench.run(4, out);
+        assertTrue(nodes > 0);
+        assertEquals(nodes, Bench.run(4, out));
+        assertTrue(os.toString().contains("Nodes searched : " + nodes));
+    }
+
+    public void testIgnoresThreadsAndMultiPv() {
+        final PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        final long nodes = Bench.run(4, out);
+        final Configuration configuration = Configuration.getInstance();
+        configuration.setProperty(Configurable.Key.ENGINE_THREADS, "3");
+        configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, "2");
+        try {
+            assertEquals(nodes, Bench.run(4, out));
+            // the configured values are restored
+            assertEquals("3", configuration.getString(Configurable.Key.ENGINE_THREADS));
+            assertEquals("2", configuration.getString(Configurable.Key.ENGINE_MULTI_PV));
+        } finally {
+            configuration.setProperty(Configurable.Key.ENGINE_THREADS, "1");
+            configuration.setProperty(Configurable.Key.ENGINE_MULTI_PV, "1");
+        }
+    }
+}
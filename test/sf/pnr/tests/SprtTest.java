@@ -0,0 +1,56 @@
+package sf.pnr.tests;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class SprtTest extends TestCase {
+
+    private static final double DELTA = 1e-6;
+
+    public void testBounds() {
+        final Sprt sprt = new Sprt(0.05, 0.05);
+        assertEquals(-2.944439, sprt.getLowerBound(), DELTA);
+        assertEquals(2.944439, sprt.getUpperBound(), DELTA);
+        assertEquals(Sprt.Decision.ACCEPT_H1, sprt.test(3.0));
+        assertEquals(Sprt.Decision.ACCEPT_H0, sprt.test(-3.0));
+        assertEquals(Sprt.Decision.CONTINUE, sprt.test(0.5));
+    }
+
+    public void testWinDrawLoss() {
+        assertEquals(0.922241, Sprt.llrWinDrawLoss(60, 80, 40, 0, 10), DELTA);
+        assertEquals(-1.196599, Sprt.llrWinDrawLoss(40, 80, 60, 0, 10), DELTA);
+        assertEquals(0.0, Sprt.llrWinDrawLoss(0, 0, 0, 0, 10), 0.0);
+    }
+
+    public void testFirstLosses() {
+        // the bounds GameManager uses, a candidate losing its first games must not be eliminated
+        final Sprt sprt = new Sprt(0.05, 0.05);
+        assertEquals(-0.007439, Sprt.llrWinDrawLoss(0, 0, 1, 0, -20), DELTA);
+        assertEquals(Sprt.Decision.CONTINUE, sprt.test(Sprt.llrWinDrawLoss(0, 0, 1, 0, -20)));
+        assertEquals(0.074019, Sprt.llrWinDrawLoss(0, 0, 2, 0, -20), DELTA);
+        assertEquals(Sprt.Decision.CONTINUE, sprt.test(Sprt.llrWinDrawLoss(0, 0, 2, 0, -20)));
+    }
+
+    public void testAllLosses() {
+        final Sprt sprt = new Sprt(0.05, 0.05);
+        assertEquals(Sprt.Decision.CONTINUE, sprt.test(Sprt.llrWinDrawLoss(0, 0, 14, 0, -20)));
+        final double llr = Sprt.llrWinDrawLoss(0, 0, 15, 0, -20);
+        assertEquals(2.954308, llr, DELTA);
+        assertEquals(Sprt.Decision.ACCEPT_H1, sprt.test(llr));
+    }
+
+    public void testAllWins() {
+        final double llr = Sprt.llrWinDrawLoss(15, 0, 0, 0, -20);
+        assertEquals(-3.168048, llr, DELTA);
+        assertEquals(Sprt.Decision.ACCEPT_H0, new Sprt(0.05, 0.05).test(llr));
+    }
+
+    public void testAllDraws() {
+        final double llr = Sprt.llrWinDrawLoss(0, 120, 0, 0, 10);
+        assertEquals(-3.080855, llr, DELTA);
+        assertEquals(Sprt.Decision.ACCEPT_H0, new Sprt(0.05, 0.05).test(llr));
+        // an even score sits exactly between symmetric hypotheses
+        assertEquals(0.0, Sprt.llrWinDrawLoss(0, 10, 0, -10, 10), DELTA);
+    }
+}
@@ -0,0 +1,118 @@
+package sf.pnr.tools;
+
+import junit.framework.TestCase;
+import sf.pnr.base.Board;
+import sf.pnr.base.Configurable;
+import sf.pnr.base.Configuration;
+import sf.pnr.base.Polyglot;
+import sf.pnr.base.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ */
+public class PolyglotBookBuilderTest extends TestCase {
+
+    private static final String[] OPENINGS = {
+        "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7",
+        "1. e4 c5 2. Nf3 d6 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6",
+        "1. d4 d5 2. c4 e6 3. Nc3 Nf6 4. Bg5 Be7 5. e3 O-O",
+        "1. d4 Nf6 2. c4 g6 3. Nc3 Bg7 4. e4 d6 5. Nf3 O-O",
+        "1. c4 e5 2. Nc3 Nf6 3. g3 d5 4. cxd5 Nxd5 5. Bg2 Nb6",
+        "1. Nf3 d5 2. g3 Nf6 3. Bg2 c6 4. O-O Bg4 5. d3 Nbd7",
+        "1. e4 e6 2. d4 d5 3. Nc3 Bb4 4. e5 c5 5. a3 Bxc3+ 6. bxc3 Ne7",
+        "1. e4 c6 2. d4 d5 3. Nc3 dxe4 4. Nxe4 Bf5 5. Ng3 Bg6"
+    };
+    private static final String[] RESULTS = {"1-0", "1/2-1/2", "0-1"};
+
+    private File smallBuffer;
+    private File largeBuffer;
+    private File oldBook;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        smallBuffer = File.createTempFile("pnr-book-small", ".bin");
+        largeBuffer = File.createTempFile("pnr-book-large", ".bin");
+        oldBook = Polyglot.BOOK;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Configuration.getInstance().setProperty(Configurable.Key.POLYGLOT_BOOK,
+            oldBook == null? "": oldBook.getAbsolutePath());
+        smallBuffer.delete();
+        largeBuffer.delete();
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws IOException {
+        // a buffer this small spills every few games, so the book is merged from several sorted runs
+        build(smallBuffer, 32);
+        build(largeBuffer, 1 << 16);
+        assertTrue(Arrays.equals(readFile(largeBuffer), readFile(smallBuffer)));
+
+        Configuration.getInstance().setProperty(Configurable.Key.POLYGLOT_BOOK, smallBuffer.getAbsolutePath());
+        final Polyglot polyglot = new Polyglot();
+        final Board board = new Board();
+        board.restart();
+        final Map<Integer, Integer> moves = polyglot.readMoves(board);
+        assertEquals(4, moves.size());
+        // 2 * wins + draws from white's point of view
+        assertEquals(12, moves.get(StringUtils.fromSimple("e2e4")).intValue());
+        assertEquals(6, moves.get(StringUtils.fromSimple("d2d4")).intValue());
+        assertEquals(3, moves.get(StringUtils.fromSimple("c2c4")).intValue());
+        assertEquals(3, moves.get(StringUtils.fromSimple("g1f3")).intValue());
+
+        for (String opening: OPENINGS) {
+            board.restart();
+            for (String san: opening.split(" ")) {
+                if (san.endsWith(".")) {
+                    continue;
+                }
+                final int move = StringUtils.fromShort(board, san);
+                assertTrue(opening + ": " + san, polyglot.readMoves(board).containsKey(move));
+                board.move(move);
+            }
+        }
+    }
+
+    private static void build(final File book, final int bufferSize) throws IOException {
+        final StringBuilder pgn = new StringBuilder();
+        for (String result: RESULTS) {
+            for (String opening: OPENINGS) {
+                pgn.append("[Result \"").append(result).append("\"]\n\n");
+                pgn.append(opening).append(' ').append(result).append("\n\n");
+            }
+        }
+        final PolyglotBookBuilder builder = new PolyglotBookBuilder(bufferSize);
+        builder.setMinGames(1);
+        builder.setThreads(2);
+        builder.addGames(new ByteArrayInputStream(pgn.toString().getBytes("US-ASCII")));
+        builder.build(book);
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        final InputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < content.length) {
+                final int read = is.read(content, offset, content.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            is.close();
+        }
+        return content;
+    }
+}
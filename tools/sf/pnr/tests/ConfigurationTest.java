@@ -26,26 +26,70 @@ public class ConfigurationTest {
         for (UciRunner engine: engines) {
             engine.setPostSearchOptions(postSearchOptions);
         }
+        final List<UciRunner[]> workerEngines = new ArrayList<UciRunner[]>();
+        workerEngines.add(engines);
         try {
             final int depth = Integer.parseInt(System.getProperty("searchTest.maxDepth", "0"));
             final int time = Integer.parseInt(System.getProperty("searchTest.maxTime", "100"));
             final int printInterval = Integer.parseInt(System.getProperty("searchTest.printInterval", "20"));
+            final int threads = Integer.parseInt(System.getProperty("searchTask.threads", "1"));
+            final double sprtElo = Double.parseDouble(System.getProperty("searchTask.sprtElo", "0"));
+            final double sprtAlpha = Double.parseDouble(System.getProperty("searchTask.sprtAlpha", "0.05"));
+            final double sprtBeta = Double.parseDouble(System.getProperty("searchTask.sprtBeta", "0.05"));
 
-            final MultiEngineSearchTask searchTask = new MultiEngineSearchTask(engines, depth, time, printInterval);
-            searchTask.setEliminateInterval(Integer.parseInt(System.getProperty("searchTask.eliminateInterval",
-                Integer.toString(searchTask.getEliminateInterval()))));
-            searchTask.setEliminateCount(Integer.parseInt(System.getProperty("searchTask.eliminateCount",
-                Integer.toString(searchTask.getEliminateCount()))));
-            searchTask.setEliminateMinRemaining(Integer.parseInt(System.getProperty("searchTask.eliminateMinRemaining",
-                Integer.toString(searchTask.getEliminateMinRemaining()))));
-            searchTask.setEliminateMinPercentageDiff(Double.parseDouble(System.getProperty("searchTask.eliminateMinPercentageDiff",
-                Double.toString(searchTask.getEliminateMinPercentageDiff()))));
+            // every worker needs its own engine processes, the in-process engines share their configuration
+            try {
+                for (int i = 1; i < threads; i++) {
+                    final UciRunner[] duplicates = new UciRunner[engines.length];
+                    workerEngines.add(duplicates);
+                    for (int j = 0; j < engines.length; j++) {
+                        duplicates[j] = engines[j].duplicate();
+                    }
+                }
+            } catch (UnsupportedOperationException e) {
+                System.out.println("Not all engines can be duplicated, falling back to a single worker");
+                closeEngines(workerEngines.subList(1, workerEngines.size()));
+                workerEngines.subList(1, workerEngines.size()).clear();
+            }
+
+            final List<MultiEngineSearchTask> searchTasks = new ArrayList<MultiEngineSearchTask>(workerEngines.size());
+            for (UciRunner[] players: workerEngines) {
+                final MultiEngineSearchTask searchTask = new MultiEngineSearchTask(players, depth, time, printInterval);
+                searchTask.setEliminateInterval(Integer.parseInt(System.getProperty("searchTask.eliminateInterval",
+                    Integer.toString(searchTask.getEliminateInterval()))));
+                searchTask.setEliminateCount(Integer.parseInt(System.getProperty("searchTask.eliminateCount",
+                    Integer.toString(searchTask.getEliminateCount()))));
+                searchTask.setEliminateMinRemaining(Integer.parseInt(System.getProperty("searchTask.eliminateMinRemaining",
+                    Integer.toString(searchTask.getEliminateMinRemaining()))));
+                searchTask.setEliminateMinPercentageDiff(Double.parseDouble(System.getProperty("searchTask.eliminateMinPercentageDiff",
+                    Double.toString(searchTask.getEliminateMinPercentageDiff()))));
+                if (sprtElo > 0) {
+                    searchTask.setSprt(sprtAlpha, sprtBeta, sprtElo);
+                }
+                searchTasks.add(searchTask);
+            }
 
             final long rndSeed = Long.parseLong(System.getProperty("searchTask.rndSeed", "-1"));
-            new EpdProcessor().process(testFiles, searchTask, rndSeed);
+            new EpdProcessor().process(testFiles, searchTasks, rndSeed);
+            if (searchTasks.size() > 1) {
+                final MultiEngineSearchTask merged = searchTasks.get(0);
+                for (MultiEngineSearchTask searchTask: searchTasks.subList(1, searchTasks.size())) {
+                    merged.merge(searchTask);
+                }
+                System.out.println("Merged statistics of all workers:");
+                merged.printStats();
+            }
         } finally {
+            closeEngines(workerEngines);
+        }
+    }
+
+    private static void closeEngines(final List<UciRunner[]> workerEngines) throws IOException {
+        for (UciRunner[] engines: workerEngines) {
             for (UciRunner engine: engines) {
-                engine.close();
+                if (engine != null) {
+                    engine.close();
+                }
             }
         }
     }
@@ -12,6 +12,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -19,6 +20,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  */
@@ -41,6 +48,104 @@ public class EpdProcessor {
 
     public void process(final List<String> testFiles, final EpdProcessorTask task, final long rndSeed)
             throws IOException {
+        final Random rnd = createRandom(rndSeed);
+        final long globalStartTime = System.currentTimeMillis();
+        final List<Fen> fens = getOrderedFens(getFensToProcess(testFiles), rnd);
+        if (task instanceof SearchTask) {
+            ((SearchTask) task).resetCounters();
+        }
+        String prevFileName = null;
+        int fenCount = 0;
+        for (Fen fen: fens) {
+            if (rnd == null && !fen.getFileName().equals(prevFileName)) {
+                System.out.printf("Processing file '%s'\r\n", fen.getFileName());
+                prevFileName = fen.getFileName();
+            }
+            runTask(task, fen);
+            fenCount++;
+            if (fenCount % 1000 == 0) {
+                printProgress(fenCount, globalStartTime);
+                if (task instanceof SearchTask) {
+                    printPassRatio(Collections.singletonList(task));
+                }
+            }
+        }
+        task.completed();
+        System.out.printf("Processed all files in %.1fs\r\n",
+            ((double) System.currentTimeMillis() - globalStartTime) / 1000);
+        printPassRatio(Collections.singletonList(task));
+    }
+
+    /**
+     * Processes the FENs with one worker thread per task. The FENs are dealt out in turn, so every task sees the same
+     * positions in the same order for a given seed no matter how the threads are scheduled. The tasks are completed
+     * in list order once all of them are done.
+     */
+    public void process(final List<String> testFiles, final List<? extends EpdProcessorTask> tasks,
+                        final long rndSeed) throws IOException {
+        if (tasks.isEmpty()) {
+            throw new IllegalArgumentException("At least one task is required");
+        }
+        if (tasks.size() == 1) {
+            process(testFiles, tasks.get(0), rndSeed);
+            return;
+        }
+        final Random rnd = createRandom(rndSeed);
+        final long globalStartTime = System.currentTimeMillis();
+        final List<Fen> fens = getOrderedFens(getFensToProcess(testFiles), rnd);
+        for (EpdProcessorTask task: tasks) {
+            if (task instanceof SearchTask) {
+                ((SearchTask) task).resetCounters();
+            }
+        }
+        final AtomicInteger fenCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            final EpdProcessorTask task = tasks.get(i);
+            final int first = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int j = first; j < fens.size(); j += tasks.size()) {
+                        runTask(task, fens.get(j));
+                        final int processed = fenCount.incrementAndGet();
+                        if (processed % 1000 == 0) {
+                            printProgress(processed, globalStartTime);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<Void> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new UndeclaredThrowableException(e, "Interrupted while processing FENs");
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UndeclaredThrowableException(cause);
+        }
+        for (EpdProcessorTask task: tasks) {
+            task.completed();
+        }
+        System.out.printf("Processed all files with %d workers in %.1fs\r\n", tasks.size(),
+            ((double) System.currentTimeMillis() - globalStartTime) / 1000);
+        printPassRatio(tasks);
+    }
+
+    private static Random createRandom(final long rndSeed) {
         final Random rnd;
         if (rndSeed == -1) {
             rnd = null;
@@ -51,76 +156,60 @@ public class EpdProcessor {
         } else {
             rnd = new Random(rndSeed);
         }
+        return rnd;
+    }
 
-        final long globalStartTime = System.currentTimeMillis();
-        final Map<String, List<Fen>> fensToProcess = getFensToProcess(testFiles);
+    private static List<Fen> getOrderedFens(final Map<String, List<Fen>> fensToProcess, final Random rnd) {
         int remainingFens = 0;
-        for (String fileName: fensToProcess.keySet()) {
-            remainingFens += fensToProcess.get(fileName).size();
-        }
-        if (task instanceof SearchTask) {
-            ((SearchTask) task).resetCounters();
+        for (List<Fen> fens: fensToProcess.values()) {
+            remainingFens += fens.size();
         }
-        String prevFileName = null;
+        final List<Fen> ordered = new ArrayList<Fen>(remainingFens);
         for (;remainingFens > 0; remainingFens--) {
             int index = 0;
             if (rnd != null) {
                 index = rnd.nextInt(remainingFens);
             }
-            String fileName = "";
-            Fen fen = null;
-            for (Map.Entry<String, List<Fen>> entry: fensToProcess.entrySet()) {
-                final List<Fen> fens = entry.getValue();
+            for (List<Fen> fens: fensToProcess.values()) {
                 if (fens.size() > index) {
-                    fileName = entry.getKey();
-                    fen = fens.remove(index);
+                    ordered.add(fens.remove(index));
                     break;
                 }
                 index -= fens.size();
             }
-            if (rnd == null && !fileName.equals(prevFileName)) {
-                System.out.printf("Processing file '%s'\r\n", fileName);
-                prevFileName = fileName;
-            }
-            int fenCount = 0;
-            final Board board = StringUtils.fromFen(fen.getFen());
-            final Set<String> problems = Utils.checkBoard(board);
-            if (!problems.isEmpty()) {
-                System.out.printf("Skipping FEN '%s' because of the following problem(s):\r\n", fen);
-                for (String problem: problems) {
-                    System.out.println("  - " + problem);
-                }
-                continue;
-            }
-            final Map<String, String> commands = fen.getCommands();
-            fenCount++;
-            try {
-                task.run(fileName, board, commands);
-            } catch (Exception e) {
-                throw new UndeclaredThrowableException(e, "Task failed on FEN: " + fen);
-            } catch (Error e) {
-                System.out.printf("Task failed on FEN #%d: %s\r\n", fenCount, fen);
-                throw e;
-            }
-            if (fenCount % 1000 == 0) {
-                System.out.printf("Processed %d FENs in %.1fs.\r\n", fenCount,
-                    ((double) System.currentTimeMillis() - globalStartTime) / 1000);
-                if (task instanceof SearchTask) {
-                    final SearchTask searchTask = (SearchTask) task;
-                    final int testCount = searchTask.getTestCount();
-                    System.out.printf(" Pass ratio is %.2f%%\r\n",
-                        ((double)(testCount - searchTask.getFailureCount()) * 100) / testCount);
-                }
-            }
         }
-        task.completed();
-        System.out.printf("Processed all files in %.1fs\r\n",
+        return ordered;
+    }
+
+    private static void runTask(final EpdProcessorTask task, final Fen fen) {
+        final Board board = StringUtils.fromFen(fen.getFen());
+        try {
+            task.run(fen.getFileName(), board, fen.getCommands());
+        } catch (Exception e) {
+            throw new UndeclaredThrowableException(e, "Task failed on FEN: " + fen);
+        } catch (Error e) {
+            System.out.printf("Task failed on FEN: %s\r\n", fen);
+            throw e;
+        }
+    }
+
+    private static void printProgress(final int fenCount, final long globalStartTime) {
+        System.out.printf("Processed %d FENs in %.1fs.\r\n", fenCount,
             ((double) System.currentTimeMillis() - globalStartTime) / 1000);
-        if (task instanceof SearchTask) {
-            final SearchTask searchTask = (SearchTask) task;
-            final int testCount = searchTask.getTestCount();
-            System.out.printf(" Pass ratio is %.2f%%\r\n",
-                ((double)(testCount - searchTask.getFailureCount()) * 100) / testCount);
+    }
+
+    private static void printPassRatio(final List<? extends EpdProcessorTask> tasks) {
+        int testCount = 0;
+        int failureCount = 0;
+        for (EpdProcessorTask task: tasks) {
+            if (task instanceof SearchTask) {
+                final SearchTask searchTask = (SearchTask) task;
+                testCount += searchTask.getTestCount();
+                failureCount += searchTask.getFailureCount();
+            }
+        }
+        if (testCount > 0) {
+            System.out.printf(" Pass ratio is %.2f%%\r\n", ((double)(testCount - failureCount) * 100) / testCount);
         }
     }
 
@@ -181,7 +270,7 @@ public class EpdProcessor {
                         fensInFile = new ArrayList<Fen>();
                         fensToProcess.put(fileName, fensInFile);
                     }
-                    fensInFile.add(new Fen(fen, commands));
+                    fensInFile.add(new Fen(fileName, fen, commands));
                 }
             } finally {
                 reader.close();
@@ -191,14 +280,20 @@ public class EpdProcessor {
     }
 
     private static class Fen {
+        private final String fileName;
         private final String fen;
         private final Map<String, String> commands;
 
-        private Fen(final String fen, final Map<String, String> commands) {
+        private Fen(final String fileName, final String fen, final Map<String, String> commands) {
+            this.fileName = fileName;
             this.fen = fen;
             this.commands = commands;
         }
 
+        public String getFileName() {
+            return fileName;
+        }
+
         public String getFen() {
             return fen;
         }
@@ -5,21 +5,37 @@ import sf.pnr.base.Evaluation;
 import sf.pnr.base.StringUtils;
 import sf.pnr.base.Utils;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static sf.pnr.base.Utils.*;
 
@@ -40,6 +56,14 @@ public class GameManager {
     private boolean restartBeforeMoves;
     private boolean gamesBetweenRefEngines;
     private boolean gamesBetweenTestEngines;
+    private int concurrentGames = 1;
+    private int threadsPerEngine;
+    private File resultFile;
+    private Sprt sprt;
+    private double sprtElo;
+    private int sprtMinGames = 30;
+    private final Set<UciRunner> sprtCandidates = new HashSet<UciRunner>();
+    private final Set<UciRunner> eliminated = new HashSet<UciRunner>();
 
     public GameManager(final String event, final int initialTime, final int increment, final int rounds, final boolean restartBeforeMoves) {
         this.event = event;
@@ -65,7 +89,7 @@ public class GameManager {
             System.arraycopy(refEngines, 0, allEngines, 0, refEnginesLen);
             System.arraycopy(engines, 0, allEngines, refEnginesLen, engines.length);
         }
-        final TournamentResult tournamentResult = new TournamentResult();
+        final List<Pairing> pairings = new ArrayList<Pairing>();
         int index = 1;
         for (int i = 0; i < rounds; i++) {
             for (int diff = 1; diff < allEngines.length; diff++) {
@@ -77,7 +101,7 @@ public class GameManager {
                     if (!gamesBetweenTestEngines && first >= refEnginesLen && second >= refEnginesLen) {
                         continue;
                     }
-                    play(i, index++, tournamentResult, allEngines[first], allEngines[second]);
+                    pairings.add(new Pairing(i, index++, allEngines[first], allEngines[second]));
                 }
             }
             for (int diff = 1; diff < allEngines.length; diff++) {
@@ -89,21 +113,45 @@ public class GameManager {
                     if (!gamesBetweenTestEngines && first >= refEnginesLen && second >= refEnginesLen) {
                         continue;
                     }
-                    play(i, index++, tournamentResult, allEngines[second], allEngines[first]);
+                    pairings.add(new Pairing(i, index++, allEngines[second], allEngines[first]));
+                }
+            }
+        }
+        sprtCandidates.clear();
+        sprtCandidates.addAll(Arrays.asList(engines));
+        eliminated.clear();
+        final TournamentResult tournamentResult = new TournamentResult();
+        final Set<Integer> finished = resume(tournamentResult, pairings);
+        final List<Pairing> remaining = new ArrayList<Pairing>(pairings.size());
+        for (Pairing pairing: pairings) {
+            if (!finished.contains(pairing.getIndex())) {
+                remaining.add(pairing);
+            }
+        }
+        if (concurrentGames == 1) {
+            for (Pairing pairing: remaining) {
+                if (isEliminated(pairing)) {
+                    continue;
                 }
+                final UciRunner white = pairing.getWhite();
+                final UciRunner black = pairing.getBlack();
+                play(pairing.getRound(), pairing.getIndex(), tournamentResult, white, black, white, black, System.out);
             }
+        } else {
+            playConcurrently(tournamentResult, remaining);
         }
         return tournamentResult;
     }
 
     private void play(final int round, final int index, final TournamentResult tournamentResult,
-                      final UciRunner white, final UciRunner black) {
-        System.out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL]\t%2$s - %3$s\r\n",
+                      final UciRunner white, final UciRunner black, final UciRunner whitePlayer,
+                      final UciRunner blackPlayer, final PrintStream out) {
+        out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL]\t%2$s - %3$s\r\n",
             System.currentTimeMillis(), white.getName(), black.getName());
-        System.out.printf("%4s\t%6s\t%6s\t%6s\t%7s\t%7s\t%7s\t%7s\t%9s\t%6s\t%3s\t%5s\t%8s\t%6s\t%7s\t%5s\t%6s\t%5s\r\n",
+        out.printf("%4s\t%6s\t%6s\t%6s\t%7s\t%7s\t%7s\t%7s\t%9s\t%6s\t%3s\t%5s\t%8s\t%6s\t%7s\t%5s\t%6s\t%5s\r\n",
             "mc", "white", "black", "mt[ms]", "rtw[ms]", "rtb[ms]", "nodes", "a.nodes", "nps", "a.ply", "ply", "cp",
                 "kibitz", "k.mt", "k.nodes", "k.cp", "a.diff", "diff");
-        final UciRunner[] players = new UciRunner[] {white, black};
+        final UciRunner[] players = new UciRunner[] {whitePlayer, blackPlayer};
         final int[] times = new int[]{initialTimes, initialTimes};
         GameResult result;
         final List<Integer> moves = new ArrayList<Integer>(100);
@@ -114,10 +162,10 @@ public class GameManager {
         int adjudicateCount = 0;
         int adjudicatePlayer = 0;
         try {
-            white.restart();
-            white.uciNewGame();
-            black.restart();
-            black.uciNewGame();
+            whitePlayer.restart();
+            whitePlayer.uciNewGame();
+            blackPlayer.restart();
+            blackPlayer.uciNewGame();
             final UciRunner[] kibitzers = new UciRunner[2];
             if (kibitzer != null) {
                 kibitzers[0] = kibitzer.duplicate();
@@ -154,7 +202,7 @@ public class GameManager {
                     if (toRank == 0 || toRank == 7) {
                         if ((move & MT_PROMOTION) == 0) {
                             // some engines leaves the promotion part out, so assume promotion to queen
-                            System.out.println("Adding promotion bit");
+                            out.println("Adding promotion bit");
                             move |= MT_PROMOTION_QUEEN;
                         }
                     }
@@ -167,9 +215,9 @@ public class GameManager {
                 if (!problems.isEmpty()) {
                     final String message = String.format("Illegal move ('%s') from '%s' at FEN %s",
                         StringUtils.toSimple(move), player.getName(), StringUtils.toFen(board));
-                    System.out.println(message);
+                    out.println(message);
                     for (String problem: problems) {
-                        System.out.println(problem);
+                        out.println(problem);
                     }
                     throw new IllegalMoveException(message);
                 }
@@ -211,13 +259,13 @@ public class GameManager {
                     kScoreDiff = "-";
                 }
                 final int fullMoveCount = board.getFullMoveCount();
-                System.out.printf("%3d.\t%6s\t%6s\t%6d\t%7d\t%7d\t%7d\t%7d\t%9.1f\t%6.2f\t%3d\t%5d\t%8s\t%6s\t%7s\t%5s\t%6d\t%5s\r\n",
+                out.printf("%3d.\t%6s\t%6s\t%6d\t%7d\t%7d\t%7d\t%7d\t%9.1f\t%6.2f\t%3d\t%5d\t%8s\t%6s\t%7s\t%5s\t%6d\t%5s\r\n",
                     fullMoveCount, whiteMove, blackMove, moveTime, times[0], times[1], player.getNodeCount(),
                     nodes[currentPlayer] / fullMoveCount, ((double) player.getNodeCount() * 1000) / player.getMoveTime(),
                     ((double) depths[currentPlayer]) / fullMoveCount, player.getDepth(), score,
                     kMove, kTime, kNodes, kScore, scoreDiffs[currentPlayer] / fullMoveCount, kScoreDiff);
                 if (currentPlayer == 1 && fullMoveCount % 5 == 0) {
-                    System.out.println();
+                    out.println();
                 }
 
                 board.move(move);
@@ -272,16 +320,16 @@ public class GameManager {
             }
         } catch (IOException e) {
             result = GameResult.ERROR;
-            e.printStackTrace();
-            System.out.println(StringUtils.toFen(board));
+            e.printStackTrace(out);
+            out.println(StringUtils.toFen(board));
             ex=e;
         } catch (IllegalMoveException e) {
             result = GameResult.ILLEGAL_MOVE;
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
             ex=e;
         } finally {
-            closeEngine(white);
-            closeEngine(black);
+            closeEngine(whitePlayer);
+            closeEngine(blackPlayer);
         }
 
         final int[] movesArr = new int[moves.size()];
@@ -292,13 +340,177 @@ public class GameManager {
         final GameDetails details =
             new GameDetails(event, round, white, black, index, startTime, result, movesArr, times, ex);
         tournamentResult.registerResult(white, black, details);
-        System.out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL] %s\r\n",
+        if (!result.isFailure()) {
+            saveResult(details);
+        }
+        checkSprt(tournamentResult, white, out);
+        checkSprt(tournamentResult, black, out);
+        out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL] %s\r\n",
             System.currentTimeMillis(), tournamentResult.toString(white, black));
-        System.out.println(details.toPgn());
-        System.out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL]\r\n%2$s\r\n",
+        out.println(details.toPgn());
+        out.printf("[%1$tY%1tm%1$td %1$tH:%1$tM:%1$tS.%1$tL]\r\n%2$s\r\n",
             System.currentTimeMillis(), tournamentResult.toString());
     }
 
+    private void playConcurrently(final TournamentResult tournamentResult, final List<Pairing> pairings) {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        if (concurrentGames * Math.max(threadsPerEngine, 1) > cores) {
+            System.out.printf("Warning: %d concurrent games with %d thread(s) per engine on %d cores, " +
+                "the time controls won't be fair\r\n", concurrentGames, Math.max(threadsPerEngine, 1), cores);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrentGames);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(pairings.size());
+        for (final Pairing pairing: pairings) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    if (isEliminated(pairing)) {
+                        return null;
+                    }
+                    // the games share the runners' configuration but each of them gets its own engine processes
+                    final UciRunner white = pairing.getWhite();
+                    final UciRunner black = pairing.getBlack();
+                    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    final PrintStream out = new PrintStream(buffer);
+                    play(pairing.getRound(), pairing.getIndex(), tournamentResult, white, black,
+                        duplicate(white), duplicate(black), out);
+                    out.flush();
+                    synchronized (System.out) {
+                        System.out.print(buffer.toString());
+                    }
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<Void> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new UndeclaredThrowableException(e, "Interrupted while waiting for the games to finish");
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new UndeclaredThrowableException(e.getCause(), "Game failed");
+        }
+    }
+
+    private boolean isEliminated(final Pairing pairing) {
+        synchronized (eliminated) {
+            return eliminated.contains(pairing.getWhite()) || eliminated.contains(pairing.getBlack());
+        }
+    }
+
+    private void checkSprt(final TournamentResult tournamentResult, final UciRunner player, final PrintStream out) {
+        if (sprt == null || !sprtCandidates.contains(player)) {
+            return;
+        }
+        final int[] wdl = tournamentResult.getWinDrawLoss(player);
+        if (wdl[0] + wdl[1] + wdl[2] < sprtMinGames) {
+            return;
+        }
+        final double llr = Sprt.llrWinDrawLoss(wdl[0], wdl[1], wdl[2], 0, -sprtElo);
+        if (sprt.test(llr) == Sprt.Decision.ACCEPT_H1) {
+            synchronized (eliminated) {
+                if (eliminated.add(player)) {
+                    out.printf("Engine '%s' eliminated after %d games (+%d =%d -%d), LLR: %.2f\r\n",
+                        player.getName(), wdl[0] + wdl[1] + wdl[2], wdl[0], wdl[1], wdl[2], llr);
+                }
+            }
+        }
+    }
+
+    private UciRunner duplicate(final UciRunner runner) {
+        if (threadsPerEngine > 0) {
+            return runner.duplicate(Collections.singletonMap("Threads", Integer.toString(threadsPerEngine)));
+        }
+        return runner.duplicate();
+    }
+
+    private Set<Integer> resume(final TournamentResult tournamentResult, final List<Pairing> pairings) {
+        final Set<Integer> finished = new HashSet<Integer>();
+        if (resultFile == null || !resultFile.exists()) {
+            return finished;
+        }
+        final Map<Integer, Pairing> pairingsByIndex = new HashMap<Integer, Pairing>();
+        for (Pairing pairing: pairings) {
+            pairingsByIndex.put(pairing.getIndex(), pairing);
+        }
+        try {
+            final BufferedReader reader = new BufferedReader(new FileReader(resultFile));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.trim().length() == 0 || line.startsWith("#")) {
+                        continue;
+                    }
+                    final String[] parts = line.split("\t", -1);
+                    final GameResult result = GameResult.valueOf(parts[4]);
+                    if (result.isFailure()) {
+                        // written by an older version, play the game again
+                        continue;
+                    }
+                    final int index = Integer.parseInt(parts[0]);
+                    final Pairing pairing = pairingsByIndex.get(index);
+                    if (pairing == null || !pairing.getWhite().getName().equals(parts[2]) ||
+                            !pairing.getBlack().getName().equals(parts[3])) {
+                        throw new IllegalStateException(String.format(
+                            "Game #%d in '%s' doesn't match the current pairings: %s", index, resultFile, line));
+                    }
+                    final Board board = new Board();
+                    board.restart();
+                    final String[] moveStrs = parts[8].trim().length() == 0? new String[0]: parts[8].split(" ");
+                    final int[] moves = new int[moveStrs.length];
+                    for (int i = 0; i < moveStrs.length; i++) {
+                        moves[i] = StringUtils.fromLong(board, moveStrs[i]);
+                        board.move(moves[i]);
+                    }
+                    final int[] remainedTimes = new int[] {Integer.parseInt(parts[6]), Integer.parseInt(parts[7])};
+                    final GameDetails details = new GameDetails(event, Integer.parseInt(parts[1]), pairing.getWhite(),
+                        pairing.getBlack(), index, Long.parseLong(parts[5]), result, moves, remainedTimes, null);
+                    tournamentResult.registerResult(pairing.getWhite(), pairing.getBlack(), details);
+                    finished.add(index);
+                    checkSprt(tournamentResult, pairing.getWhite(), System.out);
+                    checkSprt(tournamentResult, pairing.getBlack(), System.out);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new UndeclaredThrowableException(e, "Failed to read result file: " + resultFile);
+        }
+        System.out.printf("Resumed %d finished game(s) from '%s'\r\n", finished.size(), resultFile);
+        if (!finished.isEmpty()) {
+            System.out.println(tournamentResult.toString());
+        }
+        return finished;
+    }
+
+    private synchronized void saveResult(final GameDetails details) {
+        if (resultFile == null) {
+            return;
+        }
+        try {
+            final Writer results = new FileWriter(resultFile, true);
+            try {
+                results.write(details.toResultLine());
+                results.write("\r\n");
+            } finally {
+                results.close();
+            }
+            final Writer pgn = new FileWriter(new File(resultFile.getPath() + ".pgn"), true);
+            try {
+                pgn.write(details.toPgn());
+                pgn.write("\r\n\r\n");
+            } finally {
+                pgn.close();
+            }
+        } catch (IOException e) {
+            throw new UndeclaredThrowableException(e, "Failed to save result to: " + resultFile);
+        }
+    }
+
     private static void closeEngine(final UciRunner engine) {
         try {
             engine.close();
@@ -308,6 +520,49 @@ public class GameManager {
         }
     }
 
+    /**
+     * Number of games played at the same time. Concurrent games run on duplicates of the engines, so they only work
+     * with engines that run in external processes.
+     */
+    public void setConcurrentGames(final int concurrentGames) {
+        if (concurrentGames < 1) {
+            throw new IllegalArgumentException("At least one game has to be played at a time: " + concurrentGames);
+        }
+        this.concurrentGames = concurrentGames;
+    }
+
+    /**
+     * Core budget of the engines in concurrent games, passed to them as the "Threads" UCI option (0: not set).
+     */
+    public void setThreadsPerEngine(final int threadsPerEngine) {
+        this.threadsPerEngine = threadsPerEngine;
+    }
+
+    /**
+     * Finished games are appended to this file (and their PGN to the file with ".pgn" added to its name), the games
+     * already in it are skipped when the tournament is restarted.
+     */
+    public void setResultFile(final File resultFile) {
+        this.resultFile = resultFile;
+    }
+
+    /**
+     * Stops scheduling games for a test engine as soon as a sequential probability ratio test on its results shows that
+     * it is at least {@code elo} weaker than its opponents, the freed slots go to the remaining games.
+     */
+    public void setSprt(final double alpha, final double beta, final double elo) {
+        sprt = new Sprt(alpha, beta);
+        sprtElo = elo;
+    }
+
+    /**
+     * Test engines are never eliminated before they have played this many games, the normal approximation behind the
+     * SPRT is unreliable on fewer.
+     */
+    public void setSprtMinGames(final int sprtMinGames) {
+        this.sprtMinGames = sprtMinGames;
+    }
+
     public void setGamesBetweenRefEngines(final boolean gamesBetweenRefEngines) {
         this.gamesBetweenRefEngines = gamesBetweenRefEngines;
     }
@@ -344,6 +599,14 @@ public class GameManager {
         public double getScore(final boolean white) {
             return white? whiteScore: blackScore;
         }
+
+        /**
+         * @return true if the game was cut short by a crashed or misbehaving engine, such games are played again when
+         * the tournament is resumed
+         */
+        public boolean isFailure() {
+            return this == ERROR || this == ILLEGAL_MOVE;
+        }
     }
 
     public static class GameDetails {
@@ -444,6 +707,20 @@ public class GameManager {
             return builder.toString();
         }
 
+        public String toResultLine() {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(gameIndex).append('\t').append(round).append('\t').append(white.getName()).append('\t');
+            builder.append(black.getName()).append('\t').append(result.name()).append('\t').append(startTime);
+            builder.append('\t').append(remainedTimes[0]).append('\t').append(remainedTimes[1]).append('\t');
+            for (int i = 0; i < moves.length; i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(StringUtils.toLong(moves[i]));
+            }
+            return builder.toString();
+        }
+
         private String getHostName() {
             return HOST_NAME;
         }
@@ -482,7 +759,7 @@ public class GameManager {
             new LinkedHashMap<UciRunner, Map<UciRunner, GameSeries>>();
 
 
-        public void registerResult(final UciRunner white, final UciRunner black, final GameDetails gameDetails) {
+        public synchronized void registerResult(final UciRunner white, final UciRunner black, final GameDetails gameDetails) {
             addResult(white, black, gameDetails);
             addResult(black, white, gameDetails);
         }
@@ -501,7 +778,27 @@ public class GameManager {
             series.add(gameDetails);
         }
 
-        public String toString(final UciRunner player, final UciRunner opponent) {
+        public synchronized int[] getWinDrawLoss(final UciRunner player) {
+            final int[] wdl = new int[3];
+            final Map<UciRunner, GameSeries> matches = games.get(player);
+            if (matches != null) {
+                for (GameSeries series: matches.values()) {
+                    for (GameDetails details: series.series) {
+                        final double score = details.getScore(player);
+                        if (score > 0.5) {
+                            wdl[0]++;
+                        } else if (score == 0.5) {
+                            wdl[1]++;
+                        } else {
+                            wdl[2]++;
+                        }
+                    }
+                }
+            }
+            return wdl;
+        }
+
+        public synchronized String toString(final UciRunner player, final UciRunner opponent) {
             final StringBuilder builder = new StringBuilder();
             builder.append(player.getName());
             builder.append(" - ");
@@ -521,7 +818,7 @@ public class GameManager {
             return builder.toString();
         }
 
-        public String toString() {
+        public synchronized String toString() {
             int maxNameLen = 0;
             for (UciRunner player: games.keySet()) {
                 final String name = player.getName();
@@ -637,6 +934,36 @@ public class GameManager {
         }
     }
 
+    private static class Pairing {
+        private final int round;
+        private final int index;
+        private final UciRunner white;
+        private final UciRunner black;
+
+        private Pairing(final int round, final int index, final UciRunner white, final UciRunner black) {
+            this.round = round;
+            this.index = index;
+            this.white = white;
+            this.black = black;
+        }
+
+        public int getRound() {
+            return round;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public UciRunner getWhite() {
+            return white;
+        }
+
+        public UciRunner getBlack() {
+            return black;
+        }
+    }
+
     private static class IllegalMoveException extends Exception {
         public IllegalMoveException(final String message) {
             super(message);
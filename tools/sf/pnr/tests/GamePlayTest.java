@@ -27,6 +27,13 @@ public class GamePlayTest {
         final boolean restartBeforeMoves = Boolean.parseBoolean(System.getProperty("searchTask.restartBeforeMoves", "false"));
         final boolean gamesBetweenRefEngines = Boolean.parseBoolean(System.getProperty("searchTask.gamesBetweenRefEngines", "false"));
         final boolean gamesBetweenTestEngines = Boolean.parseBoolean(System.getProperty("searchTask.gamesBetweenTestEngines", "false"));
+        final int concurrentGames = Integer.parseInt(System.getProperty("searchTask.concurrentGames", "1"));
+        final int threadsPerEngine = Integer.parseInt(System.getProperty("searchTask.threadsPerEngine", "0"));
+        final String resultFile = System.getProperty("searchTask.resultFile");
+        final double sprtElo = Double.parseDouble(System.getProperty("searchTask.sprtElo", "0"));
+        final double sprtAlpha = Double.parseDouble(System.getProperty("searchTask.sprtAlpha", "0.05"));
+        final double sprtBeta = Double.parseDouble(System.getProperty("searchTask.sprtBeta", "0.05"));
+        final int sprtMinGames = Integer.parseInt(System.getProperty("searchTask.sprtMinGames", "30"));
 
         final String event;
         final File engineDir = TestUtils.getEngineDir();
@@ -44,6 +51,15 @@ public class GamePlayTest {
         Configuration.getInstance().loadFromSystemProperties();
         manager.setGamesBetweenRefEngines(gamesBetweenRefEngines);
         manager.setGamesBetweenTestEngines(gamesBetweenTestEngines);
+        manager.setConcurrentGames(concurrentGames);
+        manager.setThreadsPerEngine(threadsPerEngine);
+        if (resultFile != null) {
+            manager.setResultFile(new File(resultFile));
+        }
+        if (sprtElo > 0) {
+            manager.setSprt(sprtAlpha, sprtBeta, sprtElo);
+            manager.setSprtMinGames(sprtMinGames);
+        }
         manager.play(referenceEngines, engines);
         if (debugOs != null) {
             debugOs.close();
@@ -45,6 +45,10 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
     private double eliminateMinPercentageDiff = 1.0;
     private int maxNameLen;
     private boolean verbose = false;
+    private Sprt sprt;
+    private double sprtElo;
+    // discordantWins[i][j]: number of tests engine i passed and engine j failed
+    private final int[][] discordantWins;
 
     public MultiEngineSearchTask(final UciRunner[] engines, final int fixedDepth, final int timeToSolve,
                                  final int debugPrintInterval) {
@@ -57,6 +61,7 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
         for (int i = 0; i < stats.length; i++) {
             stats[i] = new Stats(engines[i].getName());
         }
+        discordantWins = new int[engines.length][engines.length];
         startTime = System.currentTimeMillis();
     }
 
@@ -92,6 +97,15 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
         this.eliminateMinPercentageDiff = eliminateMinPercentageDiff;
     }
 
+    /**
+     * Eliminates an engine as soon as a sequential probability ratio test on the tests where only one of it and the
+     * current leader passed shows that it is at least {@code elo} weaker. The interval based elimination is turned off.
+     */
+    public void setSprt(final double alpha, final double beta, final double elo) {
+        sprt = new Sprt(alpha, beta);
+        sprtElo = elo;
+    }
+
     public void setVerbose(final boolean verbose) {
         this.verbose = verbose;
     }
@@ -124,6 +138,8 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
             depth = 0;
             time = timeToSolve;
         }
+        final boolean[] tested = new boolean[engines.length];
+        final boolean[] results = new boolean[engines.length];
         try {
             for (int i = 0; i < engines.length; i++) {
                 if (!stats[i].isAlive()) {
@@ -167,13 +183,17 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
                 }
 
                 stats[i].addResult(engine.getNodeCount(), engine.getDepth(), engine.getMoveTime(), passed);
+                tested[i] = true;
+                results[i] = passed;
                 if (verbose) {
                     System.out.printf("%s - nodes: %d, depth: %d, time: %d\r\n",
                         engine.getName(), engine.getNodeCount(), engine.getDepth(), engine.getMoveTime());
                 }
             }
 
-            if (testCount % eliminateInterval == 0) {
+            if (sprt != null) {
+                eliminateBySprt(tested, results);
+            } else if (testCount % eliminateInterval == 0) {
                 eliminate();
             }
         } catch (IOException e) {
@@ -193,6 +213,37 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
         }
     }
 
+    private void eliminateBySprt(final boolean[] tested, final boolean[] results) throws IOException {
+        int leader = -1;
+        int remaining = 0;
+        for (int i = 0; i < engines.length; i++) {
+            for (int j = 0; j < engines.length; j++) {
+                if (tested[i] && tested[j] && results[i] && !results[j]) {
+                    discordantWins[i][j]++;
+                }
+            }
+            if (stats[i].isAlive()) {
+                remaining++;
+                if (leader == -1 || FAILURE_COUNT_COMPARATOR.compare(stats[i], stats[leader]) < 0) {
+                    leader = i;
+                }
+            }
+        }
+        for (int i = 0; i < engines.length && remaining > eliminateMinRemaining; i++) {
+            if (i == leader || !stats[i].isAlive()) {
+                continue;
+            }
+            final double llr = Sprt.llrWinLoss(discordantWins[i][leader], discordantWins[leader][i], 0, -sprtElo);
+            if (sprt.test(llr) == Sprt.Decision.ACCEPT_H1) {
+                System.out.printf("Engine '%s' eliminated after %d tests, LLR vs '%s': %.2f\r\n",
+                    engines[i].getName(), testCount, engines[leader].getName(), llr);
+                stats[i].setElimatedAt(testCount);
+                engines[i].close();
+                remaining--;
+            }
+        }
+    }
+
     private void eliminate() throws IOException {
         final TreeMap<Stats, UciRunner> map = new TreeMap<Stats, UciRunner>(FAILURE_COUNT_COMPARATOR);
         int remaining = 0;
@@ -226,7 +277,21 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
         }
     }
 
-    private void printStats() {
+    /**
+     * Adds the results of another task that ran the same engines on a different share of the positions.
+     */
+    public void merge(final MultiEngineSearchTask other) {
+        if (other.stats.length != stats.length) {
+            throw new IllegalArgumentException(
+                String.format("Engine count mismatch: %d vs %d", stats.length, other.stats.length));
+        }
+        testCount += other.testCount;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i].merge(other.stats[i]);
+        }
+    }
+
+    public void printStats() {
         System.out.printf("Statistics after %d tests (elapsed time: %2.1fs):\r\n",
             testCount, ((double) System.currentTimeMillis() - startTime) / 1000);
         System.out.println(getHeader());
@@ -300,6 +365,20 @@ public class MultiEngineSearchTask implements EpdProcessorTask {
             testCount++;
         }
 
+        public void merge(final Stats other) {
+            totalNodeCount += other.totalNodeCount;
+            totalDepth += other.totalDepth;
+            totalMoveTime += other.totalMoveTime;
+            failureCount += other.failureCount;
+            testCount += other.testCount;
+            // an engine stays alive as long as any of the workers kept it
+            if (isAlive() || other.isAlive()) {
+                elimatedAt = 0;
+            } else {
+                elimatedAt = Math.max(elimatedAt, other.elimatedAt);
+            }
+        }
+
         public double getAvgNodeCount() {
             return ((double) totalNodeCount) / testCount;
         }
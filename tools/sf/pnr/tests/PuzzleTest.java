@@ -14,7 +14,11 @@ public class PuzzleTest {
         testFiles.add("best7.epd");
         testFiles.add("wnperm.epd");
         testFiles.add("qtest_easy.epd");
-        final SearchTask task = new SearchTask(100);
-        new EpdProcessor().process(testFiles, task);
+        final int threads = Integer.parseInt(System.getProperty("searchTask.threads", "1"));
+        final List<SearchTask> tasks = new ArrayList<SearchTask>(threads);
+        for (int i = 0; i < threads; i++) {
+            tasks.add(new SearchTask(100));
+        }
+        new EpdProcessor().process(testFiles, tasks, -1);
     }
 }
\ No newline at end of file
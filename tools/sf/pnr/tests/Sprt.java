@@ -0,0 +1,81 @@
+package sf.pnr.tests;
+
+/**
+ */
+public class Sprt {
+
+    public static enum Decision {
+        ACCEPT_H0, ACCEPT_H1, CONTINUE
+    }
+
+    private static final double MIN_COUNT = 1.0;
+
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * @param alpha probability of accepting H1 when H0 is true
+     * @param beta probability of accepting H0 when H1 is true
+     */
+    public Sprt(final double alpha, final double beta) {
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid error rates: alpha=%f, beta=%f", alpha, beta));
+        }
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    public Decision test(final double llr) {
+        if (llr >= upperBound) {
+            return Decision.ACCEPT_H1;
+        } else if (llr <= lowerBound) {
+            return Decision.ACCEPT_H0;
+        }
+        return Decision.CONTINUE;
+    }
+
+    /**
+     * Log-likelihood ratio of win/loss outcomes without draws (e.g. the tests only one of two engines passed), H0: the
+     * Elo difference is elo0, H1: it is elo1.
+     */
+    public static double llrWinLoss(final int wins, final int losses, final double elo0, final double elo1) {
+        final double p0 = expectedScore(elo0);
+        final double p1 = expectedScore(elo1);
+        return wins * Math.log(p1 / p0) + losses * Math.log((1 - p1) / (1 - p0));
+    }
+
+    /**
+     * Log-likelihood ratio of game results using the normal approximation of the generalized SPRT, H0: the Elo
+     * difference is elo0, H1: it is elo1.
+     */
+    public static double llrWinDrawLoss(final int wins, final int draws, final int losses, final double elo0,
+                                        final double elo1) {
+        if (wins + draws + losses == 0) {
+            return 0.0;
+        }
+        // a missing outcome counts as one game, so one-sided results have a sane variance: they still get decided,
+        // but not after a handful of games
+        final double w = Math.max(wins, MIN_COUNT);
+        final double d = Math.max(draws, MIN_COUNT);
+        final double l = Math.max(losses, MIN_COUNT);
+        final double games = w + d + l;
+        final double score = (w + d * 0.5) / games;
+        final double variance = (w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) +
+            l * score * score) / games;
+        final double s0 = expectedScore(elo0);
+        final double s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    public static double expectedScore(final double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+}
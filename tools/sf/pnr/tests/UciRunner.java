@@ -285,7 +285,8 @@ public class UciRunner {
                     nodeCount = newNodeCount;
                 }
                 final Integer newScore = (Integer) params.get("cp");
-                if (newScore != null) {
+                final Integer pvIndex = (Integer) params.get("multipv");
+                if (newScore != null && (pvIndex == null || pvIndex == 1)) {
                     score = newScore;
                     final Integer newDepth = (Integer) params.get("depth");
                     if (newDepth != null) {
@@ -305,6 +306,8 @@ public class UciRunner {
         for (int i = 0; i < parts.length; i++) {
             if (parts[i].equals("depth")) {
                 params.put("depth", Integer.parseInt(parts[++i]));
+            } else if (parts[i].equals("multipv")) {
+                params.put("multipv", Integer.parseInt(parts[++i]));
             } else if (parts[i].equals("nodes")) {
                 params.put("nodes", Long.parseLong(parts[++i]));
             } else if (parts[i].equals("cp")) {
@@ -372,6 +375,15 @@ public class UciRunner {
         return new UciRunner(name, uciOptions, postSearchOptions, process.duplicate());
     }
 
+    public UciRunner duplicate(final Map<String, String> additionalOptions) {
+        final Map<String, String> options = new HashMap<String, String>();
+        if (uciOptions != null) {
+            options.putAll(uciOptions);
+        }
+        options.putAll(additionalOptions);
+        return new UciRunner(name, options, postSearchOptions, process.duplicate());
+    }
+
     public String toString() {
         return name;
     }
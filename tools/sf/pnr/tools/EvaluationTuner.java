@@ -0,0 +1,397 @@
+package sf.pnr.tools;
+
+import sf.pnr.base.Board;
+import sf.pnr.base.Configurable;
+import sf.pnr.base.Configuration;
+import sf.pnr.base.Engine;
+import sf.pnr.base.Evaluation;
+import sf.pnr.base.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import static sf.pnr.base.Utils.*;
+
+/**
+ */
+public class EvaluationTuner {
+
+    private static final int POSITION_TABLE_LENGTH = 128;
+
+    private final List<Position> positions = new ArrayList<Position>();
+    private final List<Parameter> parameters = new ArrayList<Parameter>();
+    private final int threads;
+    private final ExecutorService executor;
+    private final Engine[] engines;
+    private final Board[] boards;
+    private final int lazyEvalMargin;
+    private double k = 1.0;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: EvaluationTuner <labelled EPD file> <output config file>");
+            return;
+        }
+        final int threads = Integer.parseInt(
+            System.getProperty("pnr.tuner.threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        final int maxPositions = Integer.parseInt(System.getProperty("pnr.tuner.maxPositions", "0"));
+        final double k = Double.parseDouble(System.getProperty("pnr.tuner.k", "0"));
+        final int maxIterations = Integer.parseInt(System.getProperty("pnr.tuner.maxIterations", "100"));
+        final Pattern include = Pattern.compile(System.getProperty("pnr.tuner.include", "evaluation\\..*"));
+        final Pattern exclude = Pattern.compile(System.getProperty("pnr.tuner.exclude", "evaluation\\.lazyMargin"));
+
+        final EvaluationTuner tuner = new EvaluationTuner(threads);
+        tuner.load(args[0], maxPositions);
+        tuner.addParameters(include, exclude);
+        try {
+            if (k > 0) {
+                tuner.k = k;
+            } else {
+                tuner.fitK();
+            }
+            tuner.tune(maxIterations, args[1]);
+        } finally {
+            tuner.shutdown();
+        }
+    }
+
+    public EvaluationTuner(final int threads) {
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads);
+        engines = new Engine[threads];
+        boards = new Board[threads];
+        final Configuration configuration = Configuration.getInstance();
+        // quiescence scores cached in the transposition table are only valid for one set of parameters, the table is
+        // cleared before every pass so the smallest one will do
+        final String tableSize = configuration.getString(Configurable.Key.TRANSP_TABLE_SIZE);
+        configuration.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, "1");
+        try {
+            for (int i = 0; i < threads; i++) {
+                engines[i] = new Engine();
+                boards[i] = new Board();
+            }
+        } finally {
+            configuration.setProperty(Configurable.Key.TRANSP_TABLE_SIZE, tableSize);
+        }
+        // lazy cuts would score positions without the terms being tuned
+        lazyEvalMargin = Evaluation.LAZY_EVAL_MARGIN;
+        Evaluation.LAZY_EVAL_MARGIN = Integer.MAX_VALUE >> 1;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        Evaluation.LAZY_EVAL_MARGIN = lazyEvalMargin;
+    }
+
+    /**
+     * Reads positions labelled with the game result, either as a {@code c9 "1-0"} opcode or as a trailing
+     * {@code [1.0]}, and keeps them in a compact form.
+     */
+    public void load(final String fileName, final int maxPositions) throws IOException {
+        final BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        int skipped = 0;
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                final double result = parseResult(line);
+                if (Double.isNaN(result)) {
+                    skipped++;
+                    continue;
+                }
+                final String[] fields = line.split(" ");
+                final String fen = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " 0 1";
+                positions.add(new Position(StringUtils.fromFen(fen), result));
+                if (maxPositions > 0 && positions.size() >= maxPositions) {
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.printf("Loaded %d positions, skipped %d unlabelled lines\r\n", positions.size(), skipped);
+    }
+
+    private static double parseResult(final String line) {
+        if (line.contains("1/2-1/2") || line.endsWith("[0.5]")) {
+            return 0.5;
+        } else if (line.contains("\"1-0\"") || line.endsWith("[1.0]")) {
+            return 1.0;
+        } else if (line.contains("\"0-1\"") || line.endsWith("[0.0]")) {
+            return 0.0;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Registers every int and int[] field of {@link Evaluation} whose configuration key matches. The two halves of the
+     * 0x88 position tables are mirror images, so the squares are tuned in pairs to keep the evaluation symmetric.
+     */
+    public void addParameters(final Pattern include, final Pattern exclude) {
+        final Configuration configuration = Configuration.getInstance();
+        for (Field field: Evaluation.class.getDeclaredFields()) {
+            final Configurable annotation = field.getAnnotation(Configurable.class);
+            if (annotation == null) {
+                continue;
+            }
+            final Configurable.Key key = annotation.value();
+            if (key == Configurable.Key.EVAL_LAZY_MARGIN ||
+                    !include.matcher(key.getKey()).matches() || exclude.matcher(key.getKey()).matches()) {
+                continue;
+            }
+            final Class<?> type = configuration.getType(key);
+            if (int.class.equals(type)) {
+                parameters.add(new Parameter(key, -1, -1));
+            } else if (int[].class.equals(type)) {
+                final int length = parseValues(configuration.getString(key)).length;
+                if (length == POSITION_TABLE_LENGTH) {
+                    for (int rank = 0; rank < 8; rank++) {
+                        for (int file = 0; file < 8; file++) {
+                            parameters.add(new Parameter(key, (rank << 4) + file, ((7 - rank) << 4) + 8 + file));
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        parameters.add(new Parameter(key, i, -1));
+                    }
+                }
+            }
+        }
+        System.out.printf("Tuning %d parameters\r\n", parameters.size());
+    }
+
+    /**
+     * Finds the scaling constant of the sigmoid that fits the current evaluation best.
+     */
+    public void fitK() {
+        final int[] scores = computeScores();
+        double best = error(scores);
+        for (double step = 0.5; step >= 0.005; step /= 10) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (double candidate: new double[] {k + step, k - step}) {
+                    if (candidate <= 0) {
+                        continue;
+                    }
+                    final double previous = k;
+                    k = candidate;
+                    final double error = error(scores);
+                    if (error < best) {
+                        best = error;
+                        improved = true;
+                        break;
+                    }
+                    k = previous;
+                }
+            }
+        }
+        System.out.printf("K: %.3f, error: %.6f\r\n", k, best);
+    }
+
+    /**
+     * Local search: every parameter is moved by one in both directions and the change is kept if it reduces the
+     * error. Stops when a full round brings no improvement.
+     */
+    public void tune(final int maxIterations, final String outputFile) throws IOException {
+        double best = error(computeScores());
+        System.out.printf("Initial error: %.6f\r\n", best);
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            int improvements = 0;
+            for (Parameter parameter: parameters) {
+                for (int delta: new int[] {1, -1}) {
+                    parameter.add(delta);
+                    final double error = error(computeScores());
+                    if (error < best) {
+                        best = error;
+                        improvements++;
+                        break;
+                    }
+                    parameter.add(-delta);
+                }
+            }
+            System.out.printf("Iteration %d: error %.6f, %d improvement(s)\r\n", iteration, best, improvements);
+            save(outputFile, best);
+            if (improvements == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Quiescence scores of all positions from white's point of view. The positions are split across the worker
+     * threads, which all see the same (static) evaluation parameters.
+     */
+    public int[] computeScores() {
+        final int[] scores = new int[positions.size()];
+        final List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int first = i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    final Engine engine = engines[first];
+                    final Board board = boards[first];
+                    // the cached scores were computed with the previous parameters
+                    engine.getEvaluation().clear();
+                    engine.getTranspositionTable().clear();
+                    for (int j = first; j < scores.length; j += threads) {
+                        positions.get(j).setup(board);
+                        final int score = engine.quiescence(board);
+                        scores[j] = (board.getState() & WHITE_TO_MOVE) == WHITE_TO_MOVE? score: -score;
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UndeclaredThrowableException(e, "Interrupted while computing the scores");
+        } catch (ExecutionException e) {
+            throw new UndeclaredThrowableException(e.getCause(), "Failed to compute the scores");
+        }
+        return scores;
+    }
+
+    /**
+     * Mean squared difference between the game results and the win probabilities derived from the scores.
+     */
+    public double error(final int[] scores) {
+        double sum = 0.0;
+        for (int i = 0; i < scores.length; i++) {
+            final double diff = positions.get(i).result - sigmoid(scores[i]);
+            sum += diff * diff;
+        }
+        return sum / scores.length;
+    }
+
+    private double sigmoid(final int score) {
+        return 1.0 / (1.0 + Math.pow(10.0, -k * score / 400.0));
+    }
+
+    private void save(final String fileName, final double error) throws IOException {
+        final Configuration configuration = Configuration.getInstance();
+        final List<Configurable.Key> keys = new ArrayList<Configurable.Key>();
+        for (Parameter parameter: parameters) {
+            if (!keys.contains(parameter.key)) {
+                keys.add(parameter.key);
+            }
+        }
+        final BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+        try {
+            writer.write(String.format("# positions: %d, K: %.3f, error: %.6f", positions.size(), k, error));
+            writer.newLine();
+            for (Configurable.Key key: keys) {
+                writer.write(key.getKey() + "=" + configuration.getString(key));
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static int[] parseValues(final String valueStr) {
+        final String[] parts = valueStr.split(",");
+        final int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static String formatValues(final int[] values) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+
+    private static class Parameter {
+        private final Configurable.Key key;
+        private final int index;
+        private final int mirrorIndex;
+
+        private Parameter(final Configurable.Key key, final int index, final int mirrorIndex) {
+            this.key = key;
+            this.index = index;
+            this.mirrorIndex = mirrorIndex;
+        }
+
+        public void add(final int delta) {
+            final Configuration configuration = Configuration.getInstance();
+            if (index < 0) {
+                configuration.setProperty(key, Integer.toString(Integer.parseInt(configuration.getString(key)) + delta));
+            } else {
+                final int[] values = parseValues(configuration.getString(key));
+                values[index] += delta;
+                if (mirrorIndex >= 0) {
+                    values[mirrorIndex] += delta;
+                }
+                configuration.setProperty(key, formatValues(values));
+            }
+        }
+    }
+
+    private static class Position {
+        // piece codes of the 64 squares (a1 = 0) and the board state, the boards themselves are far too big to keep
+        private final byte[] squares = new byte[64];
+        private final int state;
+        private final double result;
+
+        private Position(final Board board, final double result) {
+            final int[] board0x88 = board.getBoard();
+            for (int i = 0; i < 64; i++) {
+                squares[i] = (byte) board0x88[((i >> 3) << 4) + (i & 7)];
+            }
+            state = board.getState();
+            this.result = result;
+        }
+
+        public void setup(final Board board) {
+            board.clear();
+            final int[] board0x88 = board.getBoard();
+            for (int i = 0; i < 64; i++) {
+                final int piece = squares[i];
+                if (piece == EMPTY) {
+                    continue;
+                }
+                final int pos = ((i >> 3) << 4) + (i & 7);
+                board0x88[pos] = piece;
+                final int side = piece > 0? WHITE: BLACK;
+                final int absPiece = Math.abs(piece);
+                if (absPiece == KING) {
+                    board.setKing(side, pos);
+                    board.getPieceArrayPositions()[pos] = 1;
+                } else {
+                    final int[] pieces = board.getPieces(side, absPiece);
+                    pieces[0]++;
+                    pieces[pieces[0]] = pos;
+                    board.getPieceArrayPositions()[pos] = pieces[0];
+                }
+            }
+            board.setState(state);
+            board.recompute();
+        }
+    }
+}
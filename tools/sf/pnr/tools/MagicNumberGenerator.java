@@ -0,0 +1,65 @@
+package sf.pnr.tools;
+
+import sf.pnr.base.MagicBitBoard;
+
+import java.util.Random;
+
+/**
+ */
+public class MagicNumberGenerator {
+
+    private static final long MAGIC_SEED = 0x504E524D41474943L;
+
+    public static void main(final String[] args) {
+        final Random rnd = new Random(MAGIC_SEED);
+        final long[] rookMagics = new long[64];
+        final long[] bishopMagics = new long[64];
+        for (int pos64 = 0; pos64 < 64; pos64++) {
+            rookMagics[pos64] = findMagic(pos64, true, rnd);
+        }
+        for (int pos64 = 0; pos64 < 64; pos64++) {
+            bishopMagics[pos64] = findMagic(pos64, false, rnd);
+        }
+        BitBoardBuilder.print("ROOK_MAGIC", rookMagics);
+        BitBoardBuilder.print("BISHOP_MAGIC", bishopMagics);
+    }
+
+    private static long findMagic(final int pos64, final boolean rook, final Random rnd) {
+        final long mask = rook? MagicBitBoard.computeRookMask(pos64): MagicBitBoard.computeBishopMask(pos64);
+        final int bits = Long.bitCount(mask);
+        final int shift = 64 - bits;
+        final long[] occupancies = new long[1 << bits];
+        final long[] references = new long[1 << bits];
+        int count = 0;
+        long subset = 0L;
+        do {
+            occupancies[count] = subset;
+            references[count] = rook? MagicBitBoard.computeRookAttacks(pos64, subset):
+                MagicBitBoard.computeBishopAttacks(pos64, subset);
+            count++;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        final long[] attacks = new long[1 << bits];
+        final int[] epochs = new int[1 << bits];
+        for (int epoch = 1; true; epoch++) {
+            final long magic = rnd.nextLong() & rnd.nextLong() & rnd.nextLong();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            boolean found = true;
+            for (int i = 0; i < count && found; i++) {
+                final int index = (int) ((occupancies[i] * magic) >>> shift);
+                if (epochs[index] < epoch) {
+                    epochs[index] = epoch;
+                    attacks[index] = references[i];
+                } else if (attacks[index] != references[i]) {
+                    found = false;
+                }
+            }
+            if (found) {
+                return magic;
+            }
+        }
+    }
+}
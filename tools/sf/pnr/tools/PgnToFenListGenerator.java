@@ -1,25 +1,23 @@
 package sf.pnr.tools;
 
 import sf.pnr.base.Board;
-import sf.pnr.base.Engine;
+import sf.pnr.base.PgnGame;
+import sf.pnr.base.PgnReader;
 import sf.pnr.base.StringUtils;
 import sf.pnr.base.Utils;
 import sf.pnr.tests.TestUtils;
 import sf.pnr.tests.UciRunner;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.channels.Channels;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -27,11 +25,17 @@ public class PgnToFenListGenerator {
     private static final int MAX_SCORE_DEPTH = 10;
     private int skipMoves;
     private int maxScore;
-    private final Map<String, Integer> fenRoots = new HashMap<String, Integer>();
-    private final List<String> fens = new ArrayList<String>(10000);
+    // zobrist keys of the positions written so far, the FENs themselves go straight to the writer
+    private final Set<Long> written = new HashSet<Long>();
+    private BufferedWriter writer;
+    private int fenCount = 0;
     private int skippedEarly = 0;
     private int skippedMaxScore = 0;
+    private int skippedGames = 0;
     private UciRunner[] referenceEngines;
+    private final PgnGame game = new PgnGame();
+    private final Board board = new Board();
+    private int[] moves = new int[256];
 
     public static void main(final String[] args) throws IOException {
         final PgnToFenListGenerator generator = new PgnToFenListGenerator();
@@ -39,10 +43,7 @@ public class PgnToFenListGenerator {
         generator.setSkipMoves(13);
         generator.setMaxScore(800);
         generator.setReferenceEngines(referenceEngines);
-        //generator.saveDistinct("med-games.epd");
-        generator.convert(new File(args[0]));
-        generator.saveDistinct(args[1]);
-        //generator.saveDuplicates(args[1]);
+        generator.convert(new File(args[0]), new File(args[1]));
     }
 
     private void setReferenceEngines(final UciRunner[] referenceEngines) {
@@ -57,35 +58,15 @@ public class PgnToFenListGenerator {
         this.maxScore = maxScore;
     }
 
-    private void saveDistinct(final String arg) throws IOException {
-        final BufferedWriter writer = new BufferedWriter(new FileWriter(arg));
+    public void convert(final File file, final File output) throws IOException {
+        writer = new BufferedWriter(new FileWriter(output));
         try {
-            for (String fen: fens) {
-                writer.write(fen);
-                writer.newLine();
-            }
-        } finally {
-            writer.close();
-        }
-        System.out.printf("Written %d FENs\r\n", fens.size());
-    }
-
-    private void saveDuplicates(final String arg) throws IOException {
-        final BufferedWriter writer = new BufferedWriter(new FileWriter(arg));
-        int count = 0;
-        try {
-            for (Map.Entry<String, Integer> entry: fenRoots.entrySet()) {
-                if (entry.getValue() > 2) {
-                    writer.write(entry.getKey());
-                    writer.write(" 0 1");
-                    writer.newLine();
-                    count++;
-                }
-            }
+            convert(file);
         } finally {
             writer.close();
+            writer = null;
         }
-        System.out.printf("Written %d FENs\r\n", count);
+        System.out.printf("Written %d FENs\r\n", fenCount);
     }
 
     private void convert(final File file) throws IOException {
@@ -98,91 +79,70 @@ public class PgnToFenListGenerator {
                 System.out.println("Processing file " + file.getAbsolutePath());
                 if (file.getName().endsWith(".zip")) {
                     final ZipFile zipFile = new ZipFile(file);
-                    for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
-                        final ZipEntry zipEntry = entries.nextElement();
-                        System.out.println("  processing zip entry " + zipEntry.getName());
-                        convert(zipFile.getInputStream(zipEntry));
-                        System.out.printf("FEN count: %d, skippedEarly %d, skippedMaxScore %d\r\n",
-                            fens.size(), skippedEarly, skippedMaxScore);
+                    try {
+                        for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                            final ZipEntry zipEntry = entries.nextElement();
+                            System.out.println("  processing zip entry " + zipEntry.getName());
+                            convert(zipFile.getInputStream(zipEntry));
+                            printStats();
+                        }
+                    } finally {
+                        zipFile.close();
                     }
                 } else {
-                    convert(new FileInputStream(file));
-                    System.out.printf("FEN count: %d, skippedEarly %d, skippedMaxScore %d\r\n",
-                        fens.size(), skippedEarly, skippedMaxScore);
+                    final InputStream is = new FileInputStream(file);
+                    try {
+                        convert(is);
+                    } finally {
+                        is.close();
+                    }
+                    printStats();
                 }
 
             }
         }
     }
 
+    private void printStats() {
+        System.out.printf("FEN count: %d, skippedEarly %d, skippedMaxScore %d, skippedGames %d\r\n",
+            fenCount, skippedEarly, skippedMaxScore, skippedGames);
+    }
+
     private void convert(final InputStream is) throws IOException {
-        final BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-        final StringBuilder currentPgn = new StringBuilder(500);
-        boolean inHeader = true;
-        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-            line = line.trim();
-            if (line.length() == 0) {
-                continue;
+        // the reference engines can't be shared, so the games are converted one by one on this thread
+        final PgnReader reader = new PgnReader(Channels.newChannel(is));
+        while (reader.next(game)) {
+            if (moves.length < game.getMoveCount()) {
+                moves = new int[game.getMoveCount()];
             }
-            if (line.startsWith("[")) {
-                if (!inHeader) {
-                    convert(currentPgn.toString());
-                    currentPgn.delete(0, currentPgn.length());
-                    inHeader = true;
-                }
-            } else {
-                inHeader = false;
+            final int moveCount = game.parseMoves(board, moves);
+            if (moveCount < 0) {
+                skippedGames++;
+                continue;
             }
-            currentPgn.append(line).append("\r\n");
-        }
-        if (currentPgn.length() > 0) {
-            convert(currentPgn.toString());
-        }
-    }
-
-    private void convert(final String pgn) {
-        final int[] moves;
-        final Map<String, String> headers;
-        try {
-            headers = new HashMap<String, String>();
-            moves = StringUtils.fromPgnToMoves(pgn, headers);
-        } catch (RuntimeException e) {
-            System.out.println("Failed to process PGN: " + pgn);
-            throw e;
-        }
-        final Board board;
-        if (headers.containsKey("FEN")) {
-            board = StringUtils.fromFen(headers.get("FEN"));
-        } else {
-            board = new Board();
-            board.restart();
-        }
-        for (final int move: moves) {
-            board.move(move);
-            final int fullMoves = (board.getState() & Utils.FULL_MOVES) >> Utils.SHIFT_FULL_MOVES;
-            if (fullMoves > skipMoves && !board.isMate()) {
-                if (maxScore > 0) {
-                    final int score = getScore(board);
-                    if (score > maxScore || score < -maxScore) {
-                        skippedMaxScore++;
+            game.setupBoard(board);
+            for (int i = 0; i < moveCount; i++) {
+                board.move(moves[i]);
+                final int fullMoves = (board.getState() & Utils.FULL_MOVES) >> Utils.SHIFT_FULL_MOVES;
+                if (fullMoves > skipMoves && !board.isMate()) {
+                    if (!written.add(board.getZobristKey())) {
                         continue;
                     }
-                }
-                final String fen = StringUtils.toFen(board);
-                final String fenRoot = getFenWithoutMoveCounts(fen);
-                final Integer count = fenRoots.get(fenRoot);
-                if (count == null) {
-                    fens.add(fen);
-                    fenRoots.put(fenRoot, 1);
+                    if (maxScore > 0) {
+                        final int score = getScore(board);
+                        if (score > maxScore || score < -maxScore) {
+                            skippedMaxScore++;
+                            continue;
+                        }
+                    }
+                    writer.write(StringUtils.toFen(board));
+                    writer.newLine();
+                    fenCount++;
                 } else {
-                    fenRoots.put(fenRoot, count + 1);
+                    skippedEarly++;
                 }
-            } else {
-                skippedEarly++;
             }
         }
-        System.out.printf("FEN count: %d, skippedEarly %d, skippedMaxScore %d\r\n",
-            fens.size(), skippedEarly, skippedMaxScore);
     }
 
     public static String getFenWithoutMoveCounts(final String fen) {
@@ -0,0 +1,429 @@
+package sf.pnr.tools;
+
+import sf.pnr.base.Board;
+import sf.pnr.base.PgnGame;
+import sf.pnr.base.PgnReader;
+import sf.pnr.base.Polyglot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static sf.pnr.base.Utils.*;
+
+/**
+ */
+public class PolyglotBookBuilder {
+
+    // key, polyglot move, wins, draws, losses
+    private static final int RUN_RECORD_SIZE = 8 + 2 + 4 + 4 + 4;
+    private static final int LOSS = 0;
+    private static final int DRAW = 1;
+    private static final int WIN = 2;
+
+    private int maxPly = 32;
+    private int threads = 1;
+    private int minGames = 3;
+    // one entry per ply played: the polyglot key of the position and (polyglot move << 2) | result for the mover
+    private final long[] keys;
+    private final long[] values;
+    private int size;
+    private final List<File> runs = new ArrayList<File>();
+    private int gameCount;
+    private int skippedGames;
+
+    // moves of the position being written, collected while merging
+    private final int[] positionMoves = new int[256];
+    private final int[] positionScores = new int[256];
+    private int positionMoveCount;
+    private int entryCount;
+    private int positionCount;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: PolyglotBookBuilder <output book> <PGN file, zip or directory>...");
+            return;
+        }
+        final int bufferSize = Integer.parseInt(System.getProperty("pnr.book.bufferSize", "4194304"));
+        final PolyglotBookBuilder builder = new PolyglotBookBuilder(bufferSize);
+        builder.setMaxPly(Integer.parseInt(System.getProperty("pnr.book.maxPly", "32")));
+        builder.setMinGames(Integer.parseInt(System.getProperty("pnr.book.minGames", "3")));
+        builder.setThreads(Integer.parseInt(
+            System.getProperty("pnr.book.threads", Integer.toString(Runtime.getRuntime().availableProcessors()))));
+        for (int i = 1; i < args.length; i++) {
+            builder.addGames(new File(args[i]));
+        }
+        builder.build(new File(args[0]));
+    }
+
+    public PolyglotBookBuilder(final int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        keys = new long[bufferSize];
+        values = new long[bufferSize];
+    }
+
+    public void setMaxPly(final int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public void setMinGames(final int minGames) {
+        this.minGames = minGames;
+    }
+
+    public void addGames(final File file) throws IOException {
+        if (file.getName().startsWith("_")) {
+            return;
+        }
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                addGames(child);
+            }
+        } else {
+            System.out.println("Processing file " + file.getAbsolutePath());
+            if (file.getName().endsWith(".zip")) {
+                final ZipFile zipFile = new ZipFile(file);
+                try {
+                    for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                        final ZipEntry zipEntry = entries.nextElement();
+                        System.out.println("  processing zip entry " + zipEntry.getName());
+                        addGames(zipFile.getInputStream(zipEntry));
+                    }
+                } finally {
+                    zipFile.close();
+                }
+            } else {
+                final InputStream is = new FileInputStream(file);
+                try {
+                    addGames(is);
+                } finally {
+                    is.close();
+                }
+            }
+            System.out.printf("Games: %d, skipped: %d, runs: %d\r\n", gameCount, skippedGames, runs.size());
+        }
+    }
+
+    public void addGames(final InputStream is) throws IOException {
+        PgnReader.process(Channels.newChannel(is), threads, new PgnReader.GameFilter() {
+            @Override
+            public boolean accept(final PgnGame game) {
+                if (getWhiteResult(game.getResult()) < 0) {
+                    synchronized (PolyglotBookBuilder.this) {
+                        skippedGames++;
+                    }
+                    return false;
+                }
+                return true;
+            }
+        }, new PgnReader.GameProcessor() {
+            @Override
+            public void process(final PgnGame game, final Board board) {
+                addGame(game, board);
+            }
+        });
+    }
+
+    private void addGame(final PgnGame game, final Board board) {
+        final int[] moves = new int[game.getMoveCount()];
+        if (game.parseMoves(board, moves) < 0) {
+            synchronized (this) {
+                skippedGames++;
+            }
+            return;
+        }
+        final int whiteResult = getWhiteResult(game.getResult());
+        final int plies = Math.min(moves.length, maxPly);
+        final long[] gameKeys = new long[plies];
+        final long[] gameValues = new long[plies];
+        game.setupBoard(board);
+        for (int i = 0; i < plies; i++) {
+            final int move = moves[i];
+            final int moverResult = (board.getState() & WHITE_TO_MOVE) > 0? whiteResult: WIN - whiteResult;
+            gameKeys[i] = board.getPolyglotZobristKey();
+            gameValues[i] = ((long) Polyglot.toPolyglotMove(move) << 2) | moverResult;
+            board.move(move);
+        }
+        synchronized (this) {
+            try {
+                for (int i = 0; i < plies; i++) {
+                    add(gameKeys[i], gameValues[i]);
+                }
+            } catch (IOException e) {
+                throw new UndeclaredThrowableException(e, "Failed to write run file");
+            }
+            gameCount++;
+        }
+    }
+
+    private static int getWhiteResult(final String result) {
+        if ("1-0".equals(result)) {
+            return WIN;
+        } else if ("0-1".equals(result)) {
+            return LOSS;
+        } else if ("1/2-1/2".equals(result)) {
+            return DRAW;
+        }
+        return -1;
+    }
+
+    private void add(final long key, final long value) throws IOException {
+        if (size == keys.length) {
+            writeRun();
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Sorts the buffered entries, aggregates the results of the same move and writes them to a temporary run file.
+     */
+    private void writeRun() throws IOException {
+        sort(0, size - 1);
+        final File run = File.createTempFile("pnr-book", ".run");
+        run.deleteOnExit();
+        final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+        try {
+            final int[] counts = new int[3];
+            for (int i = 0; i < size; i++) {
+                counts[(int) (values[i] & 0x03)]++;
+                if (i + 1 == size || keys[i + 1] != keys[i] || (values[i + 1] >> 2) != (values[i] >> 2)) {
+                    out.writeLong(keys[i]);
+                    out.writeShort((int) (values[i] >> 2));
+                    out.writeInt(counts[WIN]);
+                    out.writeInt(counts[DRAW]);
+                    out.writeInt(counts[LOSS]);
+                    counts[WIN] = 0;
+                    counts[DRAW] = 0;
+                    counts[LOSS] = 0;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        runs.add(run);
+        size = 0;
+    }
+
+    private void sort(int low, int high) {
+        while (high - low > 16) {
+            final int mid = (low + high) >>> 1;
+            final long pivotKey = keys[mid];
+            final long pivotValue = values[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+                    i++;
+                }
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // recurse into the smaller half to keep the stack shallow
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        final long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        final long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private static int compare(final long key1, final long value1, final long key2, final long value2) {
+        if (key1 != key2) {
+            return compareUnsigned(key1, key2);
+        }
+        return value1 < value2? -1: (value1 == value2? 0: 1);
+    }
+
+    private static int compareUnsigned(final long a, final long b) {
+        final long x = a + Long.MIN_VALUE;
+        final long y = b + Long.MIN_VALUE;
+        return x < y? -1: (x == y? 0: 1);
+    }
+
+    /**
+     * Merges the run files into the book. Moves played in fewer than minGames games are dropped, the rest are
+     * weighted by 2 * wins + draws, scaled down per position when the largest weight doesn't fit into 16 bits.
+     */
+    public void build(final File book) throws IOException {
+        if (size > 0) {
+            writeRun();
+        }
+        final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(runs.size(), 1),
+            new Comparator<RunReader>() {
+                @Override
+                public int compare(final RunReader r1, final RunReader r2) {
+                    if (r1.key != r2.key) {
+                        return compareUnsigned(r1.key, r2.key);
+                    }
+                    return r1.move - r2.move;
+                }
+            });
+        for (File run: runs) {
+            final RunReader reader = new RunReader(run);
+            if (reader.next()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+        final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(book), 1 << 16));
+        try {
+            long currentKey = 0;
+            int currentMove = -1;
+            int wins = 0;
+            int draws = 0;
+            int losses = 0;
+            while (!queue.isEmpty()) {
+                final RunReader reader = queue.poll();
+                if (currentMove < 0 || reader.key != currentKey || reader.move != currentMove) {
+                    if (currentMove >= 0) {
+                        addPositionMove(currentMove, wins, draws, losses);
+                        if (reader.key != currentKey) {
+                            writePosition(out, currentKey);
+                        }
+                    }
+                    currentKey = reader.key;
+                    currentMove = reader.move;
+                    wins = 0;
+                    draws = 0;
+                    losses = 0;
+                }
+                wins += reader.wins;
+                draws += reader.draws;
+                losses += reader.losses;
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            if (currentMove >= 0) {
+                addPositionMove(currentMove, wins, draws, losses);
+                writePosition(out, currentKey);
+            }
+        } finally {
+            out.close();
+            for (File run: runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+        System.out.printf("Games: %d, skipped: %d, positions: %d, entries: %d\r\n",
+            gameCount, skippedGames, positionCount, entryCount);
+    }
+
+    private void addPositionMove(final int move, final int wins, final int draws, final int losses) {
+        final int score = 2 * wins + draws;
+        if (wins + draws + losses >= minGames && score > 0) {
+            positionMoves[positionMoveCount] = move;
+            positionScores[positionMoveCount] = score;
+            positionMoveCount++;
+        }
+    }
+
+    private void writePosition(final DataOutputStream out, final long key) throws IOException {
+        // polyglot books list the moves of a position in decreasing weight order
+        for (int i = 1; i < positionMoveCount; i++) {
+            for (int j = i; j > 0 && positionScores[j - 1] < positionScores[j]; j--) {
+                final int move = positionMoves[j - 1];
+                positionMoves[j - 1] = positionMoves[j];
+                positionMoves[j] = move;
+                final int score = positionScores[j - 1];
+                positionScores[j - 1] = positionScores[j];
+                positionScores[j] = score;
+            }
+        }
+        final long maxScore = positionMoveCount > 0? positionScores[0]: 0;
+        for (int i = 0; i < positionMoveCount; i++) {
+            int weight = positionScores[i];
+            if (maxScore > 0xFFFF) {
+                weight = (int) Math.max(weight * 0xFFFFL / maxScore, 1);
+            }
+            out.writeLong(key);
+            out.writeShort(positionMoves[i]);
+            out.writeShort(weight);
+            out.writeInt(0);
+            entryCount++;
+        }
+        if (positionMoveCount > 0) {
+            positionCount++;
+        }
+        positionMoveCount = 0;
+    }
+
+    private static class RunReader {
+        private final DataInputStream in;
+        private long remaining;
+        private long key;
+        private int move;
+        private int wins;
+        private int draws;
+        private int losses;
+
+        private RunReader(final File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+            remaining = run.length() / RUN_RECORD_SIZE;
+        }
+
+        private boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            key = in.readLong();
+            move = in.readShort() & 0xFFFF;
+            wins = in.readInt();
+            draws = in.readInt();
+            losses = in.readInt();
+            return true;
+        }
+
+        private void close() throws IOException {
+            in.close();
+        }
+    }
+}